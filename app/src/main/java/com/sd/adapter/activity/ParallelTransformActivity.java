@@ -0,0 +1,53 @@
+package com.sd.adapter.activity;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+import com.sd.adapter.R;
+import com.sd.adapter.benchmark.ParallelTransformBenchmark;
+
+/**
+ * 在设备上运行{@link ParallelTransformBenchmark}
+ */
+public class ParallelTransformActivity extends Activity implements View.OnClickListener
+{
+    private Button mBtnRun;
+    private TextView mTvResult;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.act_parallel_transform);
+        mBtnRun = findViewById(R.id.btn_run);
+        mTvResult = findViewById(R.id.tv_result);
+        mBtnRun.setOnClickListener(this);
+    }
+
+    @Override
+    public void onClick(View v)
+    {
+        mBtnRun.setEnabled(false);
+        mTvResult.setText("running...");
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final String result = ParallelTransformBenchmark.run(10000);
+                runOnUiThread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        mTvResult.setText(result);
+                        mBtnRun.setEnabled(true);
+                    }
+                });
+            }
+        }).start();
+    }
+}
@@ -0,0 +1,107 @@
+package com.sd.adapter.benchmark;
+
+import com.sd.lib.adapter.data.DataHolder;
+import com.sd.lib.adapter.data.ListDataHolder;
+import com.sd.lib.adapter.data.ParallelDataTransform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 测量{@link ParallelDataTransform}在不同线程数下{@link ListDataHolder#setData(List)}的耗时，
+ * 不依赖Android，可以在设备上或者JVM中运行
+ */
+public class ParallelTransformBenchmark
+{
+    private static final int ROUND = 5;
+
+    /**
+     * 转换一个数据的计算量，大约是解析一条普通数据的耗时
+     */
+    private static final int WORK = 2000;
+
+    private static final DataHolder.DataTransform<String> TRANSFORM = new DataHolder.DataTransform<String>()
+    {
+        @Override
+        public String transform(String source)
+        {
+            double value = 0;
+            for (int i = 0; i < WORK; i++)
+            {
+                value += Math.sin(i * source.length());
+            }
+            return source + ":" + (long) (value * 1000);
+        }
+    };
+
+    /**
+     * @param itemCount 数据数量
+     * @return 每个线程数的最好耗时和相对单线程的加速比
+     */
+    public static String run(int itemCount)
+    {
+        final List<String> listSource = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++)
+        {
+            listSource.add("item" + i);
+        }
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+        // 至少测量到4个线程，核心数少的时候可以看到并行的额外开销
+        final int maxThread = Math.max(cores, 4);
+        final List<Integer> listThread = new ArrayList<>();
+        for (int threads = 1; threads < maxThread; threads *= 2)
+        {
+            listThread.add(threads);
+        }
+        listThread.add(maxThread);
+
+        final StringBuilder builder = new StringBuilder();
+        builder.append("cores=").append(cores).append(" items=").append(itemCount).append('\n');
+
+        List<String> listExpect = null;
+        long single = 0;
+        for (int threads : listThread)
+        {
+            // 调用线程也会转换一块，所以线程池少一个线程
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads - 1));
+            try
+            {
+                final ListDataHolder<String> holder = new ListDataHolder<>();
+                holder.setDataTransform(threads == 1 ? TRANSFORM : new ParallelDataTransform<>(TRANSFORM, executor));
+
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < ROUND; i++)
+                {
+                    final long start = System.nanoTime();
+                    holder.setData(listSource);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+
+                if (listExpect == null)
+                    listExpect = new ArrayList<>(holder.getData());
+                else if (!listExpect.equals(holder.getData()))
+                    throw new IllegalStateException("result order changed with " + threads + " threads");
+
+                if (threads == 1)
+                    single = best;
+
+                builder.append("threads=").append(threads)
+                        .append(" best=").append(best / 1000000).append("ms")
+                        .append(" speedup=").append(String.format("%.2f", (double) single / best))
+                        .append('\n');
+            } finally
+            {
+                executor.shutdown();
+            }
+        }
+        return builder.toString();
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.print(run(args.length > 0 ? Integer.parseInt(args[0]) : 10000));
+    }
+}
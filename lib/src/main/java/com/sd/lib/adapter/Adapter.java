@@ -28,6 +28,23 @@ public interface Adapter<T>
      */
     void setNotifyDataChangeMode(NotifyDataChangeMode mode);
 
+    /**
+     * 设置是否合并同一帧内的数据变更通知，默认不合并
+     *
+     * @param coalesce
+     */
+    void setNotifyCoalescing(boolean coalesce);
+
+    /**
+     * 冻结通知，冻结期间数据变化只记录不刷新ui，例如页面不可见的时候
+     */
+    void freezeNotifications();
+
+    /**
+     * 解冻通知，刷新冻结期间记录的变化
+     */
+    void thawNotifications();
+
     /**
      * 刷新position对应的item
      *
@@ -35,11 +52,26 @@ public interface Adapter<T>
      */
     void notifyItemViewChanged(int position);
 
+    /**
+     * 局部刷新position对应的item
+     *
+     * @param position
+     * @param payload  描述变化的内容，null-整个item刷新
+     */
+    void notifyItemViewChanged(int position, Object payload);
+
     /**
      * 通知数据变更
      */
     void notifyDataSetChanged();
 
+    /**
+     * 设置数据持有者对象，默认为{@link com.sd.lib.adapter.data.ListDataHolder}
+     *
+     * @param holder
+     */
+    void setDataHolder(DataHolder<T> holder);
+
     /**
      * 返回数据持有者对象
      *
@@ -67,6 +99,10 @@ public interface Adapter<T>
         /**
          * 刷新全部可见的项
          */
-        All
+        All,
+        /**
+         * 和{@link #Smart}一样，但是只刷新可见范围内发生变化的项，其他的项在显示的时候再刷新
+         */
+        Visible
     }
 }
@@ -3,9 +3,13 @@ package com.sd.lib.adapter;
 import android.content.Context;
 
 import com.sd.lib.adapter.callback.CallbackHolder;
+import com.sd.lib.adapter.data.DataChangeLog;
 import com.sd.lib.adapter.data.DataHolder;
 import com.sd.lib.adapter.data.ListDataHolder;
+import com.sd.lib.adapter.data.MainThreadScheduler;
+import com.sd.lib.adapter.data.Scheduler;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class AdapterProxy<T> implements Adapter<T>
@@ -18,6 +22,310 @@ public class AdapterProxy<T> implements Adapter<T>
 
     private final Callback mCallback;
 
+    private Scheduler mCoalesceScheduler;
+    /**
+     * 合并通知的时候记录还未通知的变化
+     */
+    private final DataChangeLog<T> mChangeLog = new DataChangeLog<>();
+    /**
+     * 合并通知的时候通过{@link #notifyItemViewChanged(int)}标记需要刷新的位置，和数据集的当前位置一致
+     */
+    private final DirtyBitSet mDirtyPositions = new DirtyBitSet();
+    private long mSuppressedChangeCount;
+
+    private VisibleRange mVisibleRange;
+    private int mVisibleMargin = 5;
+    /**
+     * {@link NotifyDataChangeMode#Visible}的时候在可见范围外发生变化，还未刷新的位置
+     */
+    private final DirtyBitSet mHiddenDirty = new DirtyBitSet();
+    private boolean mFlushScheduled;
+
+    private int mFreezeCount;
+    private int mThawThreshold = 32;
+    /**
+     * 冻结期间需要整体刷新
+     */
+    private boolean mThawDataSetChanged;
+    /**
+     * 冻结时ui中的数据，冻结期间适配器按它显示，保证和ui收到的通知一致
+     */
+    private List<T> mFrozenData;
+
+    private final Runnable mFlushTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mFlushScheduled = false;
+            flushNotifications();
+        }
+    };
+
+    private final DataHolder.PayloadCallback<T> mDataChangeCallback = new DataHolder.PayloadCallback<T>()
+    {
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            if (record())
+            {
+                mChangeLog.onDataChanged(list);
+                mDirtyPositions.clear();
+                flushStructureChange();
+            } else
+                mDispatcher.onDataChanged(list);
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            if (record())
+                mChangeLog.onDataChanged(index, data);
+            else
+                mDispatcher.onDataChanged(index, data);
+        }
+
+        @Override
+        public void onDataChanged(int index, T data, Object payload)
+        {
+            if (record())
+                mChangeLog.onDataChanged(index, data, payload);
+            else
+                mDispatcher.onDataChanged(index, data, payload);
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            if (record())
+            {
+                mChangeLog.onDataAdded(index, list);
+                mDirtyPositions.insert(index, list.size());
+                flushStructureChange();
+            } else
+                mDispatcher.onDataAdded(index, list);
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            if (record())
+            {
+                mChangeLog.onDataRemoved(index, data);
+                mDirtyPositions.remove(index, 1);
+                flushStructureChange();
+            } else
+                mDispatcher.onDataRemoved(index, data);
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            if (record())
+                mChangeLog.onDataRangeChanged(index, list);
+            else
+                mDispatcher.onDataRangeChanged(index, list);
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            if (record())
+            {
+                mChangeLog.onDataRangeRemoved(index, list);
+                mDirtyPositions.remove(index, list.size());
+                flushStructureChange();
+            } else
+                mDispatcher.onDataRangeRemoved(index, list);
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            if (record())
+            {
+                mChangeLog.onDataMoved(fromIndex, toIndex, data);
+                mDirtyPositions.move(fromIndex, toIndex);
+                flushStructureChange();
+            } else
+                mDispatcher.onDataMoved(fromIndex, toIndex, data);
+        }
+    };
+
+    /**
+     * 按刷新方式通知{@link Callback}
+     */
+    private final DataHolder.PayloadCallback<T> mDispatcher = new DataHolder.PayloadCallback<T>()
+    {
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            mHiddenDirty.clear();
+            if (mNotifyDataChangeMode != NotifyDataChangeMode.None)
+                mCallback.onDataSetChanged();
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+            {
+                mCallback.onDataSetChanged();
+            } else if (isPartialMode())
+            {
+                dispatchItemChanged(index, 1, null);
+            }
+        }
+
+        @Override
+        public void onDataChanged(int index, T data, Object payload)
+        {
+            if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+            {
+                mCallback.onDataSetChanged();
+            } else if (isPartialMode())
+            {
+                dispatchItemChanged(index, 1, payload);
+            }
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            mHiddenDirty.insert(index, list.size());
+            if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+            {
+                mCallback.onDataSetChanged();
+            } else if (isPartialMode())
+            {
+                mCallback.onItemRangeInserted(index, list.size());
+            }
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            mHiddenDirty.remove(index, 1);
+            if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+            {
+                mCallback.onDataSetChanged();
+            } else if (isPartialMode())
+            {
+                mCallback.onItemRangeRemoved(index, 1);
+            }
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+            {
+                mCallback.onDataSetChanged();
+            } else if (isPartialMode())
+            {
+                dispatchItemChanged(index, list.size(), null);
+            }
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            mHiddenDirty.remove(index, list.size());
+            if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+            {
+                mCallback.onDataSetChanged();
+            } else if (isPartialMode())
+            {
+                mCallback.onItemRangeRemoved(index, list.size());
+            }
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            mHiddenDirty.move(fromIndex, toIndex);
+            if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+            {
+                mCallback.onDataSetChanged();
+            } else if (isPartialMode())
+            {
+                mCallback.onItemMoved(fromIndex, toIndex);
+            }
+        }
+    };
+
+    /**
+     * 合并通知的时候结构变化不等待调度，和之前记录的变化一起马上通知，保证ui中的数量和数据集一致，冻结的时候不通知
+     */
+    private void flushStructureChange()
+    {
+        if (!isNotificationsFrozen())
+            flushNotifications();
+    }
+
+    /**
+     * 是否按项刷新
+     *
+     * @return
+     */
+    private boolean isPartialMode()
+    {
+        return mNotifyDataChangeMode == NotifyDataChangeMode.Smart || mNotifyDataChangeMode == NotifyDataChangeMode.Visible;
+    }
+
+    /**
+     * 通知[index, index + count)范围的数据发生变化，{@link NotifyDataChangeMode#Visible}的时候只通知可见范围内的，
+     * 其他的记录下来，在显示的时候刷新
+     *
+     * @param index
+     * @param count
+     * @param payload
+     */
+    private void dispatchItemChanged(int index, int count, Object payload)
+    {
+        int start = index;
+        int end = index + count;
+        if (mNotifyDataChangeMode == NotifyDataChangeMode.Visible && mVisibleRange != null)
+        {
+            final int first = mVisibleRange.getFirstVisiblePosition();
+            final int last = mVisibleRange.getLastVisiblePosition();
+            if (first < 0 || last < 0)
+            {
+                start = end;
+            } else
+            {
+                start = Math.max(start, first - mVisibleMargin);
+                end = Math.min(end, last + mVisibleMargin + 1);
+            }
+
+            if (start >= end)
+            {
+                markHiddenDirty(index, index + count);
+                return;
+            }
+            markHiddenDirty(index, start);
+            markHiddenDirty(end, index + count);
+            // 通知刷新的位置会重新绑定
+            for (int i = start; i < end; i++)
+            {
+                mHiddenDirty.clear(i);
+            }
+        }
+
+        if (payload != null && end - start == 1)
+            mCallback.onItemChanged(start, payload);
+        else
+            mCallback.onItemRangeChanged(start, end - start);
+    }
+
+    private void markHiddenDirty(int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            mHiddenDirty.set(i);
+        }
+    }
+
     public AdapterProxy(Callback callback)
     {
         if (callback == null)
@@ -44,83 +352,359 @@ public class AdapterProxy<T> implements Adapter<T>
     @Override
     public void setNotifyDataChangeMode(NotifyDataChangeMode mode)
     {
-        if (mode != null)
-            mNotifyDataChangeMode = mode;
+        if (mode == null || mode == mNotifyDataChangeMode)
+            return;
+
+        mNotifyDataChangeMode = mode;
+        // 冻结的时候在解冻之后刷新
+        if (!isNotificationsFrozen())
+            flushHiddenDirty();
+    }
+
+    /**
+     * 不再按可见范围刷新的时候，马上刷新之前在可见范围外变化的位置
+     */
+    private void flushHiddenDirty()
+    {
+        if (mNotifyDataChangeMode == NotifyDataChangeMode.Visible || mHiddenDirty.isEmpty())
+            return;
+
+        if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+        {
+            mCallback.onDataSetChanged();
+        } else if (mNotifyDataChangeMode == NotifyDataChangeMode.Smart)
+        {
+            int start = mHiddenDirty.nextSetBit(0);
+            while (start >= 0)
+            {
+                final int end = mHiddenDirty.nextClearBit(start);
+                mCallback.onItemRangeChanged(start, end - start);
+                start = mHiddenDirty.nextSetBit(end);
+            }
+        }
+        mHiddenDirty.clear();
+    }
+
+    /**
+     * 设置可见范围，{@link NotifyDataChangeMode#Visible}的时候使用
+     *
+     * @param range
+     */
+    public void setVisibleRange(VisibleRange range)
+    {
+        mVisibleRange = range;
+    }
+
+    /**
+     * 设置可见范围前后额外刷新的数量，默认5
+     *
+     * @param margin
+     */
+    public void setVisibleMargin(int margin)
+    {
+        mVisibleMargin = Math.max(0, margin);
+    }
+
+    /**
+     * 清除position位置在不可见时发生变化的标记，item绑定数据之后调用
+     *
+     * @param position
+     * @return true-有标记，如果item不是刚绑定的数据，需要重新绑定
+     */
+    public boolean clearItemDirty(int position)
+    {
+        return position >= 0 && mHiddenDirty.clear(position);
+    }
+
+    /**
+     * 设置是否合并通知，合并的时候数据内容的变化会先记录下来，在下一次调度的时候合并为最少的通知一起通知，
+     * 例如同一项多次修改只通知一次；新增、删除、移动会马上和已经记录的变化一起通知，保证ui中的数量和数据集一致，
+     * 需要合并新增删除的话在数据集的批量修改中进行；在主线程调度
+     *
+     * @param coalesce
+     */
+    @Override
+    public void setNotifyCoalescing(boolean coalesce)
+    {
+        setNotifyCoalescing(coalesce ? MainThreadScheduler.getInstance() : null);
+    }
+
+    /**
+     * 设置合并通知的调度器，例如在每一帧开始的时候调度，null表示不合并，会马上通知已经记录的变化
+     *
+     * @param scheduler
+     */
+    public void setNotifyCoalescing(Scheduler scheduler)
+    {
+        mCoalesceScheduler = scheduler;
+        if (scheduler == null)
+            flushNotifications();
+    }
+
+    /**
+     * 冻结通知，冻结期间数据变化只会记录下来，不会通知ui，直到{@link #thawNotifications()}，
+     * 例如页面不可见的时候冻结；可以多次冻结，解冻相同的次数之后才会通知
+     * <p>
+     * 冻结的时候会保存一份ui中的数据({@link ListDataHolder#snapshot()}，其他数据集复制一份)，
+     * 冻结期间{@link #getItemCount()}和{@link #getItem(int)}返回冻结时的数据，ui在冻结期间布局也不会和数据集不一致
+     */
+    @Override
+    public void freezeNotifications()
+    {
+        if (mFreezeCount++ == 0)
+            mFrozenData = snapshotData();
+    }
+
+    private List<T> snapshotData()
+    {
+        final DataHolder<T> holder = getDataHolder();
+        if (holder instanceof ListDataHolder)
+            return ((ListDataHolder<T>) holder).snapshot();
+        else
+            return new ArrayList<>(holder.getData());
+    }
+
+    /**
+     * 解冻通知，按合并后最少的操作通知冻结期间记录的变化，如果操作数量超过{@link #setThawThreshold(int)}则整体刷新一次
+     */
+    @Override
+    public void thawNotifications()
+    {
+        if (mFreezeCount <= 0)
+            return;
+
+        mFreezeCount--;
+        if (mFreezeCount > 0)
+            return;
+
+        mFrozenData = null;
+
+        if (mThawDataSetChanged
+                || mChangeLog.size() + mDirtyPositions.size() > mThawThreshold)
+        {
+            mThawDataSetChanged = false;
+            mChangeLog.clear();
+            mDirtyPositions.clear();
+            mHiddenDirty.clear();
+            if (mNotifyDataChangeMode != NotifyDataChangeMode.None)
+                mCallback.onDataSetChanged();
+            return;
+        }
+
+        flushNotifications();
+        flushHiddenDirty();
+    }
+
+    /**
+     * 返回ui中的数量，冻结通知的时候返回冻结时的数量
+     *
+     * @return
+     */
+    public int getItemCount()
+    {
+        final List<T> frozen = getFrozenData();
+        return frozen != null ? frozen.size() : getDataHolder().size();
+    }
+
+    /**
+     * 返回ui中position位置的数据，冻结通知的时候返回冻结时的数据
+     *
+     * @param position
+     * @return
+     */
+    public T getItem(int position)
+    {
+        final List<T> frozen = getFrozenData();
+        if (frozen == null)
+            return getDataHolder().get(position);
+
+        return position >= 0 && position < frozen.size() ? frozen.get(position) : null;
+    }
+
+    /**
+     * {@link NotifyDataChangeMode#None}的时候由外部通知ui，不使用冻结时的数据
+     *
+     * @return
+     */
+    private List<T> getFrozenData()
+    {
+        return mNotifyDataChangeMode == NotifyDataChangeMode.None ? null : mFrozenData;
+    }
+
+    /**
+     * 是否冻结了通知
+     *
+     * @return
+     */
+    public boolean isNotificationsFrozen()
+    {
+        return mFreezeCount > 0;
+    }
+
+    /**
+     * 设置解冻的时候整体刷新的阈值，记录的操作数量超过这个值的时候不再逐个通知，而是整体刷新一次，默认32
+     *
+     * @param threshold
+     */
+    public void setThawThreshold(int threshold)
+    {
+        mThawThreshold = Math.max(0, threshold);
+    }
+
+    /**
+     * 马上通知合并通知时记录的变化，冻结的时候不通知
+     */
+    public void flushNotifications()
+    {
+        if (isNotificationsFrozen())
+            return;
+        if (mChangeLog.isEmpty() && mDirtyPositions.isEmpty())
+            return;
+
+        if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
+        {
+            mChangeLog.clear();
+            mDirtyPositions.clear();
+            mCallback.onDataSetChanged();
+            return;
+        }
+
+        mChangeLog.replay(mDispatcher);
+        if (mDirtyPositions.isEmpty())
+            return;
+
+        // 标记的位置已经是最终的位置，在结构变化之后按连续的范围通知
+        final int size = getDataHolder().size();
+        final boolean notify = isPartialMode();
+        int start = mDirtyPositions.nextSetBit(0);
+        while (start >= 0 && start < size)
+        {
+            final int end = Math.min(mDirtyPositions.nextClearBit(start), size);
+            if (notify)
+                dispatchItemChanged(start, end - start, null);
+            start = mDirtyPositions.nextSetBit(end);
+        }
+        mDirtyPositions.clear();
+    }
+
+    /**
+     * 返回合并通知的时候，因为位置已经被标记而省略的刷新次数
+     *
+     * @return
+     */
+    public long getSuppressedChangeCount()
+    {
+        return mSuppressedChangeCount;
+    }
+
+    /**
+     * 是否记录变化，冻结的时候只记录；合并通知的时候会安排一次通知
+     *
+     * @return
+     */
+    private boolean record()
+    {
+        if (mNotifyDataChangeMode == NotifyDataChangeMode.None)
+            return false;
+        if (isNotificationsFrozen())
+            return true;
+
+        final Scheduler scheduler = mCoalesceScheduler;
+        if (scheduler == null)
+            return false;
+
+        if (!mFlushScheduled)
+        {
+            mFlushScheduled = true;
+            scheduler.schedule(mFlushTask);
+        }
+        return true;
     }
 
     @Override
     public void notifyItemViewChanged(int position)
+    {
+        notifyItemViewChanged(position, null);
+    }
+
+    @Override
+    public void notifyItemViewChanged(int position, Object payload)
     {
         if (!getDataHolder().isIndexLegal(position))
             return;
 
+        if (record())
+        {
+            if (payload == null)
+            {
+                // 同一个位置只刷新一次
+                if (!mDirtyPositions.set(position))
+                    mSuppressedChangeCount++;
+            } else
+            {
+                // 和记录的变化一起通知，保证位置一致
+                mChangeLog.onDataChanged(position, getDataHolder().get(position), payload);
+            }
+            return;
+        }
+
         if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
         {
             mCallback.onDataSetChanged();
-        } else if (mNotifyDataChangeMode == NotifyDataChangeMode.Smart)
+        } else if (isPartialMode())
         {
-            mCallback.onItemRangeChanged(position, 1);
+            dispatchItemChanged(position, 1, payload);
         }
     }
 
     @Override
     public void notifyDataSetChanged()
     {
+        mChangeLog.clear();
+        mDirtyPositions.clear();
+        mHiddenDirty.clear();
+        if (isNotificationsFrozen())
+        {
+            mThawDataSetChanged = true;
+            return;
+        }
         mCallback.onDataSetChanged();
     }
 
     @Override
-    public DataHolder<T> getDataHolder()
+    public void setDataHolder(DataHolder<T> holder)
     {
-        if (mDataHolder == null)
+        if (holder == null)
+            throw new NullPointerException("holder is null");
+
+        final DataHolder<T> old = mDataHolder;
+        if (old == holder)
+            return;
+
+        if (old != null)
+            old.removeDataChangeCallback(mDataChangeCallback);
+        // 旧数据的变化不再需要通知
+        mChangeLog.clear();
+        mDirtyPositions.clear();
+        mHiddenDirty.clear();
+
+        mDataHolder = holder;
+        holder.addDataChangeCallback(mDataChangeCallback);
+
+        if (old != null && mNotifyDataChangeMode != NotifyDataChangeMode.None)
         {
-            mDataHolder = new ListDataHolder<>();
-            mDataHolder.addDataChangeCallback(new DataHolder.DataChangeCallback<T>()
-            {
-                @Override
-                public void onDataChanged(List<T> list)
-                {
-                    if (mNotifyDataChangeMode != NotifyDataChangeMode.None)
-                        mCallback.onDataSetChanged();
-                }
-
-                @Override
-                public void onDataChanged(int index, T data)
-                {
-                    if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
-                    {
-                        mCallback.onDataSetChanged();
-                    } else if (mNotifyDataChangeMode == NotifyDataChangeMode.Smart)
-                    {
-                        notifyItemViewChanged(index);
-                    }
-                }
-
-                @Override
-                public void onDataAdded(int index, List<T> list)
-                {
-                    if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
-                    {
-                        mCallback.onDataSetChanged();
-                    } else if (mNotifyDataChangeMode == NotifyDataChangeMode.Smart)
-                    {
-                        mCallback.onItemRangeInserted(index, list.size());
-                    }
-                }
-
-                @Override
-                public void onDataRemoved(int index, T data)
-                {
-                    if (mNotifyDataChangeMode == NotifyDataChangeMode.All)
-                    {
-                        mCallback.onDataSetChanged();
-                    } else if (mNotifyDataChangeMode == NotifyDataChangeMode.Smart)
-                    {
-                        mCallback.onItemRangeRemoved(index, 1);
-                    }
-                }
-            });
+            if (isNotificationsFrozen())
+                mThawDataSetChanged = true;
+            else
+                mCallback.onDataSetChanged();
         }
+    }
+
+    @Override
+    public DataHolder<T> getDataHolder()
+    {
+        if (mDataHolder == null)
+            setDataHolder(new ListDataHolder<T>());
         return mDataHolder;
     }
 
@@ -132,14 +716,38 @@ public class AdapterProxy<T> implements Adapter<T>
         return mCallbackHolder;
     }
 
+    /**
+     * 可见范围
+     */
+    public interface VisibleRange
+    {
+        /**
+         * 返回第一个可见的位置
+         *
+         * @return -1表示没有可见的项
+         */
+        int getFirstVisiblePosition();
+
+        /**
+         * 返回最后一个可见的位置
+         *
+         * @return -1表示没有可见的项
+         */
+        int getLastVisiblePosition();
+    }
+
     public interface Callback
     {
         void onDataSetChanged();
 
         void onItemRangeChanged(int index, int itemCount);
 
+        void onItemChanged(int index, Object payload);
+
         void onItemRangeInserted(int index, int itemCount);
 
         void onItemRangeRemoved(int index, int itemCount);
+
+        void onItemMoved(int fromIndex, int toIndex);
     }
 }
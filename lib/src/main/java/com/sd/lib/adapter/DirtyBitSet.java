@@ -0,0 +1,237 @@
+package com.sd.lib.adapter;
+
+import java.util.Arrays;
+
+/**
+ * 记录需要刷新的位置，数据增删移动的时候同步平移，保证位置和数据集一致
+ */
+final class DirtyBitSet
+{
+    private long[] mWords = new long[1];
+    private int mCount;
+
+    /**
+     * 是否没有需要刷新的位置
+     *
+     * @return
+     */
+    public boolean isEmpty()
+    {
+        return mCount == 0;
+    }
+
+    /**
+     * 返回标记的位置数量
+     *
+     * @return
+     */
+    public int size()
+    {
+        return mCount;
+    }
+
+    /**
+     * 标记index位置需要刷新
+     *
+     * @param index
+     * @return false-已经标记过
+     */
+    public boolean set(int index)
+    {
+        final int word = index >>> 6;
+        if (word >= mWords.length)
+            mWords = Arrays.copyOf(mWords, Math.max(mWords.length * 2, word + 1));
+
+        final long mask = 1L << index;
+        if ((mWords[word] & mask) != 0)
+            return false;
+
+        mWords[word] |= mask;
+        mCount++;
+        return true;
+    }
+
+    public boolean get(int index)
+    {
+        final int word = index >>> 6;
+        return word < mWords.length && (mWords[word] & (1L << index)) != 0;
+    }
+
+    /**
+     * 清除index位置的标记
+     *
+     * @param index
+     * @return true-之前有标记
+     */
+    public boolean clear(int index)
+    {
+        final int word = index >>> 6;
+        final long mask = 1L << index;
+        if (word < mWords.length && (mWords[word] & mask) != 0)
+        {
+            mWords[word] &= ~mask;
+            mCount--;
+            return true;
+        }
+        return false;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(mWords, 0);
+        mCount = 0;
+    }
+
+    /**
+     * 返回from开始的第一个标记位置
+     *
+     * @param from
+     * @return -1表示没有
+     */
+    public int nextSetBit(int from)
+    {
+        int word = from >>> 6;
+        if (word >= mWords.length)
+            return -1;
+
+        long bits = mWords[word] & (-1L << from);
+        while (true)
+        {
+            if (bits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            if (++word >= mWords.length)
+                return -1;
+            bits = mWords[word];
+        }
+    }
+
+    /**
+     * 返回from开始的第一个未标记位置
+     *
+     * @param from
+     * @return
+     */
+    public int nextClearBit(int from)
+    {
+        int word = from >>> 6;
+        if (word >= mWords.length)
+            return from;
+
+        long bits = ~mWords[word] & (-1L << from);
+        while (true)
+        {
+            if (bits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            if (++word >= mWords.length)
+                return word << 6;
+            bits = ~mWords[word];
+        }
+    }
+
+    /**
+     * 返回to及之前的最后一个标记位置
+     *
+     * @param to
+     * @return -1表示没有
+     */
+    private int previousSetBit(int to)
+    {
+        if (to < 0)
+            return -1;
+
+        int word = to >>> 6;
+        long bits;
+        if (word >= mWords.length)
+        {
+            word = mWords.length - 1;
+            bits = mWords[word];
+        } else
+        {
+            bits = mWords[word] & (-1L >>> (63 - (to & 63)));
+        }
+
+        while (true)
+        {
+            if (bits != 0)
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+            if (--word < 0)
+                return -1;
+            bits = mWords[word];
+        }
+    }
+
+    /**
+     * index位置插入了count个数据，后面的标记往后移
+     *
+     * @param index
+     * @param count
+     */
+    public void insert(int index, int count)
+    {
+        if (mCount == 0 || count <= 0)
+            return;
+
+        // 从后往前移动，不会覆盖还未移动的标记
+        for (int i = previousSetBit(Integer.MAX_VALUE); i >= index; i = previousSetBit(i - 1))
+        {
+            clear(i);
+            set(i + count);
+        }
+    }
+
+    /**
+     * index位置删除了count个数据，删除范围内的标记被清除，后面的标记往前移
+     *
+     * @param index
+     * @param count
+     */
+    public void remove(int index, int count)
+    {
+        if (mCount == 0 || count <= 0)
+            return;
+
+        for (int i = nextSetBit(index); i >= 0 && i < index + count; i = nextSetBit(i + 1))
+        {
+            clear(i);
+        }
+
+        for (int i = nextSetBit(index + count); i >= 0; i = nextSetBit(i + 1))
+        {
+            clear(i);
+            set(i - count);
+        }
+    }
+
+    /**
+     * fromIndex位置的数据移动到了toIndex位置
+     *
+     * @param fromIndex
+     * @param toIndex
+     */
+    public void move(int fromIndex, int toIndex)
+    {
+        if (mCount == 0 || fromIndex == toIndex)
+            return;
+
+        final boolean dirty = get(fromIndex);
+        clear(fromIndex);
+        if (fromIndex < toIndex)
+        {
+            for (int i = nextSetBit(fromIndex + 1); i >= 0 && i <= toIndex; i = nextSetBit(i + 1))
+            {
+                clear(i);
+                set(i - 1);
+            }
+        } else
+        {
+            for (int i = previousSetBit(fromIndex - 1); i >= toIndex; i = previousSetBit(i - 1))
+            {
+                clear(i);
+                set(i + 1);
+            }
+        }
+
+        if (dirty)
+            set(toIndex);
+    }
+}
@@ -5,11 +5,14 @@ import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
+import android.widget.SectionIndexer;
 
 import com.sd.lib.adapter.callback.CallbackHolder;
 import com.sd.lib.adapter.callback.ItemClickCallback;
 import com.sd.lib.adapter.callback.ItemLongClickCallback;
+import com.sd.lib.adapter.data.AccessTracker;
 import com.sd.lib.adapter.data.DataHolder;
+import com.sd.lib.adapter.data.SectionedDataHolder;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,7 +21,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.WeakHashMap;
 
-public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>
+public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>, SectionIndexer
 {
     private AdapterProxy<T> mAdapterProxy;
     /**
@@ -104,13 +107,13 @@ public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>
     @Override
     public int getCount()
     {
-        return getDataHolder().size();
+        return getAdapterProxy().getItemCount();
     }
 
     @Override
     public T getItem(int position)
     {
-        return getDataHolder().get(position);
+        return getAdapterProxy().getItem(position);
     }
 
     @Override
@@ -124,6 +127,10 @@ public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>
     {
         setContext(parent.getContext());
 
+        final DataHolder<T> dataHolder = getDataHolder();
+        if (dataHolder instanceof AccessTracker)
+            ((AccessTracker) dataHolder).notifyAccess(position);
+
         convertView = onGetView(position, convertView, parent);
         mMapItemViewPosition.put(convertView, position);
         return convertView;
@@ -176,6 +183,42 @@ public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>
         onGetView(position, convertView, parent);
     }
 
+    //----------SectionIndexer implements start----------
+
+    /**
+     * 数据持有者是{@link SectionedDataHolder}的时候返回它的分组，否则返回空数组
+     *
+     * @return
+     */
+    @Override
+    public Object[] getSections()
+    {
+        final DataHolder<T> dataHolder = getDataHolder();
+        if (dataHolder instanceof SectionedDataHolder)
+            return ((SectionedDataHolder<T>) dataHolder).getSections();
+        return new Object[0];
+    }
+
+    @Override
+    public int getPositionForSection(int sectionIndex)
+    {
+        final DataHolder<T> dataHolder = getDataHolder();
+        if (dataHolder instanceof SectionedDataHolder)
+            return ((SectionedDataHolder<T>) dataHolder).getPositionForSection(sectionIndex);
+        return 0;
+    }
+
+    @Override
+    public int getSectionForPosition(int position)
+    {
+        final DataHolder<T> dataHolder = getDataHolder();
+        if (dataHolder instanceof SectionedDataHolder)
+            return ((SectionedDataHolder<T>) dataHolder).getSectionForPosition(position);
+        return 0;
+    }
+
+    //----------SectionIndexer implements end----------
+
     //----------Adapter implements start----------
 
     private AdapterProxy<T> getAdapterProxy()
@@ -209,6 +252,12 @@ public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>
                     }
                 }
 
+                @Override
+                public void onItemChanged(int index, Object payload)
+                {
+                    onItemRangeChanged(index, 1);
+                }
+
                 @Override
                 public void onItemRangeInserted(int index, int itemCount)
                 {
@@ -220,6 +269,12 @@ public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>
                 {
                     FBaseAdapter.this.notifyDataSetChanged();
                 }
+
+                @Override
+                public void onItemMoved(int fromIndex, int toIndex)
+                {
+                    FBaseAdapter.this.notifyDataSetChanged();
+                }
             });
         }
         return mAdapterProxy;
@@ -243,12 +298,42 @@ public abstract class FBaseAdapter<T> extends BaseAdapter implements Adapter<T>
         getAdapterProxy().setNotifyDataChangeMode(mode);
     }
 
+    @Override
+    public void setNotifyCoalescing(boolean coalesce)
+    {
+        getAdapterProxy().setNotifyCoalescing(coalesce);
+    }
+
+    @Override
+    public void freezeNotifications()
+    {
+        getAdapterProxy().freezeNotifications();
+    }
+
+    @Override
+    public void thawNotifications()
+    {
+        getAdapterProxy().thawNotifications();
+    }
+
     @Override
     public void notifyItemViewChanged(int position)
     {
         getAdapterProxy().notifyItemViewChanged(position);
     }
 
+    @Override
+    public void notifyItemViewChanged(int position, Object payload)
+    {
+        getAdapterProxy().notifyItemViewChanged(position, payload);
+    }
+
+    @Override
+    public void setDataHolder(DataHolder<T> holder)
+    {
+        getAdapterProxy().setDataHolder(holder);
+    }
+
     @Override
     public DataHolder<T> getDataHolder()
     {
@@ -9,6 +9,7 @@ import androidx.viewpager.widget.PagerAdapter;
 
 import com.sd.lib.adapter.callback.CallbackHolder;
 import com.sd.lib.adapter.callback.ItemClickCallback;
+import com.sd.lib.adapter.data.AccessTracker;
 import com.sd.lib.adapter.data.DataHolder;
 
 public abstract class FPagerAdapter<T> extends PagerAdapter implements Adapter<T>
@@ -109,7 +110,18 @@ public abstract class FPagerAdapter<T> extends PagerAdapter implements Adapter<T
     @Override
     public int getCount()
     {
-        return getDataHolder().size();
+        return getAdapterProxy().getItemCount();
+    }
+
+    /**
+     * 返回ui中position位置的数据，冻结通知的时候返回冻结时的数据，和{@link #getCount()}一致
+     *
+     * @param position
+     * @return
+     */
+    public final T getItem(int position)
+    {
+        return getAdapterProxy().getItem(position);
     }
 
     @Override
@@ -123,6 +135,10 @@ public abstract class FPagerAdapter<T> extends PagerAdapter implements Adapter<T
     {
         setContext(container.getContext());
 
+        final DataHolder<T> dataHolder = getDataHolder();
+        if (dataHolder instanceof AccessTracker)
+            ((AccessTracker) dataHolder).notifyAccess(position);
+
         View view = mArrCacheView.get(position);
         if (view == null)
         {
@@ -167,6 +183,12 @@ public abstract class FPagerAdapter<T> extends PagerAdapter implements Adapter<T
                     FPagerAdapter.this.notifyDataSetChanged();
                 }
 
+                @Override
+                public void onItemChanged(int index, Object payload)
+                {
+                    onItemRangeChanged(index, 1);
+                }
+
                 @Override
                 public void onItemRangeInserted(int index, int itemCount)
                 {
@@ -178,6 +200,12 @@ public abstract class FPagerAdapter<T> extends PagerAdapter implements Adapter<T
                 {
                     FPagerAdapter.this.notifyDataSetChanged();
                 }
+
+                @Override
+                public void onItemMoved(int fromIndex, int toIndex)
+                {
+                    FPagerAdapter.this.notifyDataSetChanged();
+                }
             });
         }
         return mAdapterProxy;
@@ -201,12 +229,42 @@ public abstract class FPagerAdapter<T> extends PagerAdapter implements Adapter<T
         getAdapterProxy().setNotifyDataChangeMode(mode);
     }
 
+    @Override
+    public void setNotifyCoalescing(boolean coalesce)
+    {
+        getAdapterProxy().setNotifyCoalescing(coalesce);
+    }
+
+    @Override
+    public void freezeNotifications()
+    {
+        getAdapterProxy().freezeNotifications();
+    }
+
+    @Override
+    public void thawNotifications()
+    {
+        getAdapterProxy().thawNotifications();
+    }
+
     @Override
     public void notifyItemViewChanged(int position)
     {
         getAdapterProxy().notifyItemViewChanged(position);
     }
 
+    @Override
+    public void notifyItemViewChanged(int position, Object payload)
+    {
+        getAdapterProxy().notifyItemViewChanged(position, payload);
+    }
+
+    @Override
+    public void setDataHolder(DataHolder<T> holder)
+    {
+        getAdapterProxy().setDataHolder(holder);
+    }
+
     @Override
     public DataHolder<T> getDataHolder()
     {
@@ -9,9 +9,11 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.sd.lib.adapter.callback.CallbackHolder;
 import com.sd.lib.adapter.callback.ItemClickCallback;
 import com.sd.lib.adapter.callback.ItemLongClickCallback;
+import com.sd.lib.adapter.data.AccessTracker;
 import com.sd.lib.adapter.data.DataHolder;
 import com.sd.lib.adapter.viewholder.FRecyclerViewHolder;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -21,7 +23,21 @@ import java.util.List;
  */
 public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecyclerViewHolder<T>> implements Adapter<T>
 {
+    /**
+     * 没有指定payload的刷新使用的payload，让RecyclerView走局部刷新的流程
+     */
+    private static final Object DEFAULT_PAYLOAD = new byte[0];
+
     private AdapterProxy<T> mAdapterProxy;
+    private PayloadCombiner mPayloadCombiner;
+    /**
+     * 正在分发的payload
+     */
+    private List<Object> mDispatchPayloads;
+    /**
+     * 已经添加到RecyclerView上的ViewHolder，用来计算可见范围
+     */
+    private final List<FRecyclerViewHolder<T>> mAttachedHolders = new ArrayList<>();
 
     private ItemClickCallback<T> mItemClickCallback;
     private ItemLongClickCallback<T> mItemLongClickCallback;
@@ -94,7 +110,18 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
     @Override
     public int getItemCount()
     {
-        return getDataHolder().size();
+        return getAdapterProxy().getItemCount();
+    }
+
+    /**
+     * 返回ui中position位置的数据，冻结通知的时候返回冻结时的数据，和{@link #getItemCount()}一致
+     *
+     * @param position
+     * @return
+     */
+    public final T getItem(int position)
+    {
+        return getAdapterProxy().getItem(position);
     }
 
     @Override
@@ -118,19 +145,132 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
     public final void onBindViewHolder(FRecyclerViewHolder<T> holder, int position, List<Object> payloads)
     {
         final boolean isUpdate = payloads != null && payloads.size() > 0;
-        onBindViewHolderInternal(holder, position, isUpdate);
+        onBindViewHolderInternal(holder, position, isUpdate ? mergePayloads(payloads) : null);
     }
 
     @Override
     public final void onBindViewHolder(FRecyclerViewHolder<T> holder, int position)
     {
-        onBindViewHolderInternal(holder, position, false);
+        onBindViewHolderInternal(holder, position, null);
+    }
+
+    private void onBindViewHolderInternal(FRecyclerViewHolder<T> holder, int position, List<Object> payloads)
+    {
+        final DataHolder<T> dataHolder = getDataHolder();
+        if (dataHolder instanceof AccessTracker)
+            ((AccessTracker) dataHolder).notifyAccess(position);
+
+        getAdapterProxy().clearItemDirty(position);
+        final T model = getItem(position);
+        dispatchBindData(holder, position, model, payloads);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(FRecyclerViewHolder<T> holder)
+    {
+        super.onViewAttachedToWindow(holder);
+        mAttachedHolders.add(holder);
+
+        // 不可见的时候发生变化，并且从缓存中直接显示没有重新绑定的item，在这里刷新
+        final int position = holder.getAdapterPosition();
+        if (getAdapterProxy().clearItemDirty(position))
+            dispatchBindData(holder, position, getItem(position), new ArrayList<Object>());
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(FRecyclerViewHolder<T> holder)
+    {
+        super.onViewDetachedFromWindow(holder);
+        mAttachedHolders.remove(holder);
+    }
+
+    /**
+     * 返回已经添加到RecyclerView上的ViewHolder的最小或者最大位置
+     *
+     * @param max
+     * @return -1表示没有
+     */
+    private int getAttachedPosition(boolean max)
+    {
+        int result = -1;
+        for (FRecyclerViewHolder<T> holder : mAttachedHolders)
+        {
+            final int position = holder.getAdapterPosition();
+            if (position < 0)
+                continue;
+
+            if (result < 0 || (max ? position > result : position < result))
+                result = position;
+        }
+        return result;
     }
 
-    private void onBindViewHolderInternal(FRecyclerViewHolder<T> holder, int position, boolean isUpdate)
+    /**
+     * 设置payload的合并器，同一帧内同一个item收到的多个payload会先合并再通知{@link #onUpdateData(FRecyclerViewHolder, int, Object, List)}，
+     * 默认只去掉重复的payload
+     *
+     * @param combiner
+     */
+    public void setPayloadCombiner(PayloadCombiner combiner)
     {
-        final T model = getDataHolder().get(position);
-        dispatchBindData(holder, position, model, isUpdate);
+        mPayloadCombiner = combiner;
+    }
+
+    /**
+     * 合并RecyclerView收集的payload
+     *
+     * @param payloads
+     * @return 空集合表示整个item需要刷新
+     */
+    private List<Object> mergePayloads(List<Object> payloads)
+    {
+        final List<Object> listResult = new ArrayList<>(payloads.size());
+        for (Object payload : payloads)
+        {
+            if (payload == DEFAULT_PAYLOAD)
+            {
+                listResult.clear();
+                return listResult;
+            }
+
+            boolean merged = false;
+            for (int i = 0; i < listResult.size(); i++)
+            {
+                final Object item = listResult.get(i);
+                final Object combine = mPayloadCombiner != null ? mPayloadCombiner.combine(item, payload) : (item.equals(payload) ? item : null);
+                if (combine != null)
+                {
+                    listResult.set(i, combine);
+                    merged = true;
+                    break;
+                }
+            }
+
+            if (!merged)
+                listResult.add(payload);
+        }
+        return listResult;
+    }
+
+    /**
+     * 分发数据绑定
+     *
+     * @param holder
+     * @param position
+     * @param model
+     * @param payloads null-绑定数据，不为null-刷新数据，空集合表示整个item需要刷新
+     */
+    protected void dispatchBindData(FRecyclerViewHolder<T> holder, int position, T model, List<Object> payloads)
+    {
+        // 通过旧的方法分发，兼容重写了旧方法的子类
+        mDispatchPayloads = payloads;
+        try
+        {
+            dispatchBindData(holder, position, model, payloads != null);
+        } finally
+        {
+            mDispatchPayloads = null;
+        }
     }
 
     /**
@@ -140,13 +280,16 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
      * @param position
      * @param model
      * @param isUpdate
+     * @deprecated 重写{@link #dispatchBindData(FRecyclerViewHolder, int, Object, List)}
      */
+    @Deprecated
     protected void dispatchBindData(FRecyclerViewHolder<T> holder, int position, T model, boolean isUpdate)
     {
         if (isUpdate)
         {
-            holder.notifyOnUpdateData(position, model);
-            onUpdateData(holder, position, model);
+            final List<Object> payloads = mDispatchPayloads != null ? mDispatchPayloads : new ArrayList<Object>();
+            holder.notifyOnUpdateData(position, model, payloads);
+            onUpdateData(holder, position, model, payloads);
         } else
         {
             holder.notifyOnBindData(position, model);
@@ -184,6 +327,19 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
         onBindData(holder, position, model);
     }
 
+    /**
+     * 刷新item的时候触发，默认调用{@link #onUpdateData(FRecyclerViewHolder, int, Object)}
+     *
+     * @param holder
+     * @param position
+     * @param model
+     * @param payloads 合并后的payload，空集合表示整个item需要刷新
+     */
+    public void onUpdateData(FRecyclerViewHolder<T> holder, int position, T model, List<Object> payloads)
+    {
+        onUpdateData(holder, position, model);
+    }
+
     //----------Adapter implements start----------
 
     private AdapterProxy<T> getAdapterProxy()
@@ -192,15 +348,6 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
         {
             mAdapterProxy = new AdapterProxy<>(new AdapterProxy.Callback()
             {
-                private byte[] mDefaultPayload;
-
-                public byte[] getDefaultPayload()
-                {
-                    if (mDefaultPayload == null)
-                        mDefaultPayload = new byte[0];
-                    return mDefaultPayload;
-                }
-
                 @Override
                 public void onDataSetChanged()
                 {
@@ -210,7 +357,13 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
                 @Override
                 public void onItemRangeChanged(int index, int itemCount)
                 {
-                    FRecyclerAdapter.this.notifyItemRangeChanged(index, itemCount, getDefaultPayload());
+                    FRecyclerAdapter.this.notifyItemRangeChanged(index, itemCount, DEFAULT_PAYLOAD);
+                }
+
+                @Override
+                public void onItemChanged(int index, Object payload)
+                {
+                    FRecyclerAdapter.this.notifyItemRangeChanged(index, 1, payload != null ? payload : DEFAULT_PAYLOAD);
                 }
 
                 @Override
@@ -224,6 +377,26 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
                 {
                     FRecyclerAdapter.this.notifyItemRangeRemoved(index, itemCount);
                 }
+
+                @Override
+                public void onItemMoved(int fromIndex, int toIndex)
+                {
+                    FRecyclerAdapter.this.notifyItemMoved(fromIndex, toIndex);
+                }
+            });
+            mAdapterProxy.setVisibleRange(new AdapterProxy.VisibleRange()
+            {
+                @Override
+                public int getFirstVisiblePosition()
+                {
+                    return getAttachedPosition(false);
+                }
+
+                @Override
+                public int getLastVisiblePosition()
+                {
+                    return getAttachedPosition(true);
+                }
             });
         }
         return mAdapterProxy;
@@ -247,12 +420,42 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
         getAdapterProxy().setNotifyDataChangeMode(mode);
     }
 
+    @Override
+    public void setNotifyCoalescing(boolean coalesce)
+    {
+        getAdapterProxy().setNotifyCoalescing(coalesce);
+    }
+
+    @Override
+    public void freezeNotifications()
+    {
+        getAdapterProxy().freezeNotifications();
+    }
+
+    @Override
+    public void thawNotifications()
+    {
+        getAdapterProxy().thawNotifications();
+    }
+
     @Override
     public void notifyItemViewChanged(int position)
     {
         getAdapterProxy().notifyItemViewChanged(position);
     }
 
+    @Override
+    public void notifyItemViewChanged(int position, Object payload)
+    {
+        getAdapterProxy().notifyItemViewChanged(position, payload);
+    }
+
+    @Override
+    public void setDataHolder(DataHolder<T> holder)
+    {
+        getAdapterProxy().setDataHolder(holder);
+    }
+
     @Override
     public DataHolder<T> getDataHolder()
     {
@@ -266,4 +469,19 @@ public abstract class FRecyclerAdapter<T> extends RecyclerView.Adapter<FRecycler
     }
 
     //----------Adapter implements end----------
+
+    /**
+     * payload合并器
+     */
+    public interface PayloadCombiner
+    {
+        /**
+         * 合并两个payload
+         *
+         * @param old     之前的payload
+         * @param payload 新的payload
+         * @return 合并后的payload，null-不能合并，分别通知
+         */
+        Object combine(Object old, Object payload);
+    }
 }
@@ -13,7 +13,7 @@ public abstract class FSimplePagerAdapter<T> extends FPagerAdapter<T>
         if (layoutId != 0)
         {
             final View view = LayoutInflater.from(container.getContext()).inflate(layoutId, container, false);
-            final T model = getDataHolder().get(position);
+            final T model = getItem(position);
             onBindData(position, view, container, model);
             return view;
         }
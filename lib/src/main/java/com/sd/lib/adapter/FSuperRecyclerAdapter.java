@@ -120,7 +120,7 @@ public class FSuperRecyclerAdapter<T> extends FRecyclerAdapter<T>
     @Override
     public final int getItemViewType(int position)
     {
-        final Class<?> modelClass = getDataHolder().get(position).getClass();
+        final Class<?> modelClass = getItem(position).getClass();
 
         ViewHolderInfo info = mMapModelViewHolderInfo.get(modelClass);
         if (info == null)
@@ -0,0 +1,531 @@
+package com.sd.lib.adapter.data;
+
+import com.sd.lib.adapter.data.diff.DiffCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link DataHolder}的基础实现，负责回调管理、批量修改和数据转换，子类只需要管理数据的存储，
+ * 数据修改后通过{@link #getNotifier()}通知变化
+ *
+ * @param <T>
+ */
+public abstract class AbstractDataHolder<T> implements DataHolder<T>
+{
+    @SuppressWarnings("unchecked")
+    private DataChangeCallback<T>[] mCallbacks = new DataChangeCallback[0];
+    private DataTransform<T> mDataTransform;
+
+    private DiffCallback<T> mDiffCallback;
+
+    private int mBatchDepth;
+    private final DataChangeLog<T> mBatchLog = new DataChangeLog<T>()
+    {
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            onDataChanged(index, data, takePayload(index));
+        }
+    };
+
+    private DataChangeCallback<T> mModifyCallback;
+
+    /**
+     * {@link #updateData(int, Object, Object)}的payload，在通知index位置变化的时候取出
+     */
+    private Object mPayload;
+    private int mPayloadIndex = -1;
+
+    /**
+     * 正在通知回调的层数，大于0的时候不能复用通知用的对象
+     */
+    private int mDispatchDepth;
+    private final RangeListView<T> mPayloadView = new RangeListView<>();
+    private final ArrayList<T> mRemovedBuffer = new ArrayList<>();
+
+    /**
+     * 先通知数据修改回调，再通知数据变化
+     */
+    private final DataChangeCallback<T> mModifyNotifier = new DataChangeCallback<T>()
+    {
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            mModifyCallback.onDataChanged(list);
+            getTarget().onDataChanged(list);
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            mModifyCallback.onDataChanged(index, data);
+            getTarget().onDataChanged(index, data);
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            mModifyCallback.onDataAdded(index, list);
+            getTarget().onDataAdded(index, list);
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            mModifyCallback.onDataRemoved(index, data);
+            getTarget().onDataRemoved(index, data);
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            mModifyCallback.onDataRangeChanged(index, list);
+            getTarget().onDataRangeChanged(index, list);
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            mModifyCallback.onDataRangeRemoved(index, list);
+            getTarget().onDataRangeRemoved(index, list);
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            mModifyCallback.onDataMoved(fromIndex, toIndex, data);
+            getTarget().onDataMoved(fromIndex, toIndex, data);
+        }
+    };
+
+    /**
+     * 按添加顺序的倒序把数据变化通知给所有回调，回调数组在修改的时候整个替换，所以通知过程中可以安全的增删回调
+     */
+    private final PayloadCallback<T> mDispatcher = new PayloadCallback<T>()
+    {
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            mDispatchDepth++;
+            try
+            {
+                for (int i = callbacks.length - 1; i >= 0; i--)
+                {
+                    callbacks[i].onDataChanged(list);
+                }
+            } finally
+            {
+                mDispatchDepth--;
+            }
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            onDataChanged(index, data, takePayload(index));
+        }
+
+        @Override
+        public void onDataChanged(int index, T data, Object payload)
+        {
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            mDispatchDepth++;
+            try
+            {
+                for (int i = callbacks.length - 1; i >= 0; i--)
+                {
+                    final DataChangeCallback<T> callback = callbacks[i];
+                    if (payload != null && callback instanceof PayloadCallback)
+                        ((PayloadCallback<T>) callback).onDataChanged(index, data, payload);
+                    else
+                        callback.onDataChanged(index, data);
+                }
+            } finally
+            {
+                mDispatchDepth--;
+            }
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            mDispatchDepth++;
+            try
+            {
+                for (int i = callbacks.length - 1; i >= 0; i--)
+                {
+                    callbacks[i].onDataAdded(index, list);
+                }
+            } finally
+            {
+                mDispatchDepth--;
+            }
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            mDispatchDepth++;
+            try
+            {
+                for (int i = callbacks.length - 1; i >= 0; i--)
+                {
+                    callbacks[i].onDataRemoved(index, data);
+                }
+            } finally
+            {
+                mDispatchDepth--;
+            }
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            mDispatchDepth++;
+            try
+            {
+                for (int i = callbacks.length - 1; i >= 0; i--)
+                {
+                    callbacks[i].onDataRangeChanged(index, list);
+                }
+            } finally
+            {
+                mDispatchDepth--;
+            }
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            mDispatchDepth++;
+            try
+            {
+                for (int i = callbacks.length - 1; i >= 0; i--)
+                {
+                    callbacks[i].onDataRangeRemoved(index, list);
+                }
+            } finally
+            {
+                mDispatchDepth--;
+            }
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            mDispatchDepth++;
+            try
+            {
+                for (int i = callbacks.length - 1; i >= 0; i--)
+                {
+                    callbacks[i].onDataMoved(fromIndex, toIndex, data);
+                }
+            } finally
+            {
+                mDispatchDepth--;
+            }
+        }
+    };
+
+    @Override
+    public void addDataChangeCallback(DataChangeCallback<T> callback)
+    {
+        if (callback == null || indexOfCallback(callback) >= 0)
+            return;
+
+        final DataChangeCallback<T>[] callbacks = Arrays.copyOf(mCallbacks, mCallbacks.length + 1);
+        callbacks[callbacks.length - 1] = callback;
+        mCallbacks = callbacks;
+    }
+
+    @Override
+    public void removeDataChangeCallback(DataChangeCallback<T> callback)
+    {
+        final int index = indexOfCallback(callback);
+        if (index < 0)
+            return;
+
+        final DataChangeCallback<T>[] old = mCallbacks;
+        final DataChangeCallback<T>[] callbacks = Arrays.copyOf(old, old.length - 1);
+        System.arraycopy(old, index + 1, callbacks, index, old.length - index - 1);
+        mCallbacks = callbacks;
+    }
+
+    private int indexOfCallback(DataChangeCallback<T> callback)
+    {
+        if (callback == null)
+            return -1;
+
+        final DataChangeCallback<T>[] callbacks = mCallbacks;
+        for (int i = 0; i < callbacks.length; i++)
+        {
+            if (callback.equals(callbacks[i]))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void setDataTransform(DataTransform<T> dataTransform)
+    {
+        mDataTransform = dataTransform;
+    }
+
+    @Override
+    public void setDiffCallback(DiffCallback<T> callback)
+    {
+        mDiffCallback = callback;
+    }
+
+    protected final DataTransform<T> getDataTransform()
+    {
+        return mDataTransform;
+    }
+
+    protected final DiffCallback<T> getDiffCallback()
+    {
+        return mDiffCallback;
+    }
+
+    /**
+     * 返回source的[offset, offset + size)范围的只读视图，用来通知回调，不复制数据
+     *
+     * @param source
+     * @param offset
+     * @param size
+     * @return
+     */
+    protected final List<T> obtainPayload(List<T> source, int offset, int size)
+    {
+        if (mDispatchDepth > 0)
+            return new RangeListView<T>().reset(source, offset, size);
+
+        return mPayloadView.reset(source, offset, size);
+    }
+
+    /**
+     * 返回用来临时保存被删除数据的集合
+     *
+     * @return
+     */
+    protected final List<T> obtainRemovedBuffer()
+    {
+        if (mDispatchDepth > 0)
+            return new ArrayList<>();
+
+        mRemovedBuffer.clear();
+        return mRemovedBuffer;
+    }
+
+    /**
+     * 返回当前用来通知数据变化的对象，批量修改的时候先记录下来，提交的时候再通知
+     *
+     * @return
+     */
+    protected final DataChangeCallback<T> getNotifier()
+    {
+        return mModifyCallback != null ? mModifyNotifier : getTarget();
+    }
+
+    private DataChangeCallback<T> getTarget()
+    {
+        return mBatchDepth > 0 ? mBatchLog : mDispatcher;
+    }
+
+    /**
+     * 设置数据修改回调，数据修改后马上触发，不受批量修改的影响，子类可以用来维护自己的索引
+     *
+     * @param callback
+     */
+    protected final void setModifyCallback(DataChangeCallback<T> callback)
+    {
+        mModifyCallback = callback;
+    }
+
+    /**
+     * 记录payload后更新数据，子类通知index位置变化的时候会带上payload
+     *
+     * @param index
+     * @param data
+     * @param payload
+     */
+    @Override
+    public void updateData(int index, T data, Object payload)
+    {
+        if (payload == null)
+        {
+            updateData(index, data);
+            return;
+        }
+
+        mPayload = payload;
+        mPayloadIndex = index;
+        try
+        {
+            updateData(index, data);
+        } finally
+        {
+            mPayload = null;
+            mPayloadIndex = -1;
+        }
+    }
+
+    /**
+     * 带着payload通知index位置的数据发生变化，子类转发其他holder的局部变化的时候使用
+     *
+     * @param index
+     * @param data
+     * @param payload null-普通的变化
+     */
+    protected final void notifyDataChanged(int index, T data, Object payload)
+    {
+        if (payload == null)
+        {
+            getNotifier().onDataChanged(index, data);
+            return;
+        }
+
+        final Object oldPayload = mPayload;
+        final int oldPayloadIndex = mPayloadIndex;
+        mPayload = payload;
+        mPayloadIndex = index;
+        try
+        {
+            getNotifier().onDataChanged(index, data);
+        } finally
+        {
+            mPayload = oldPayload;
+            mPayloadIndex = oldPayloadIndex;
+        }
+    }
+
+    /**
+     * 取出index位置的payload，只能取一次
+     *
+     * @param index
+     * @return
+     */
+    private Object takePayload(int index)
+    {
+        if (mPayload == null || mPayloadIndex != index)
+            return null;
+
+        final Object payload = mPayload;
+        mPayload = null;
+        mPayloadIndex = -1;
+        return payload;
+    }
+
+    @Override
+    public void beginBatch()
+    {
+        mBatchDepth++;
+    }
+
+    @Override
+    public void commitBatch()
+    {
+        if (mBatchDepth <= 0)
+            throw new IllegalStateException("commitBatch() called without beginBatch()");
+
+        mBatchDepth--;
+        if (mBatchDepth == 0)
+        {
+            mBatchLog.replay(mDispatcher);
+
+            final DataChangeCallback<T>[] callbacks = mCallbacks;
+            for (int i = callbacks.length - 1; i >= 0; i--)
+            {
+                if (callbacks[i] instanceof BatchCallback)
+                    ((BatchCallback<T>) callbacks[i]).onBatchCommitted();
+            }
+        }
+    }
+
+    @Override
+    public boolean isInBatch()
+    {
+        return mBatchDepth > 0;
+    }
+
+    @Override
+    public void batch(Runnable runnable)
+    {
+        beginBatch();
+        try
+        {
+            runnable.run();
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    /**
+     * 用设置的{@link DataTransform}转换数据
+     *
+     * @param data
+     * @return 转换结果为null的时候返回原数据
+     */
+    protected final T transformData(T data)
+    {
+        if (mDataTransform == null)
+            return data;
+
+        final T transform = mDataTransform.transform(data);
+        if (transform == null)
+            return data;
+
+        return transform;
+    }
+
+    /**
+     * 用设置的{@link DataTransform}转换list，如果是{@link BulkDataTransform}则整体转换
+     *
+     * @param list
+     * @return 没有设置转换器的时候返回list本身，否则返回新的集合
+     */
+    protected final List<T> transformData(List<? extends T> list)
+    {
+        final DataTransform<T> transform = mDataTransform;
+        if (transform == null || list == null || list.isEmpty())
+            return (List<T>) list;
+
+        final int size = list.size();
+        final List<T> listResult = new ArrayList<>(size);
+        if (transform instanceof BulkDataTransform)
+        {
+            final List<T> listTransform = ((BulkDataTransform<T>) transform).transformList(Collections.unmodifiableList(list));
+            if (listTransform == null || listTransform.size() != size)
+                throw new IllegalStateException("BulkDataTransform.transformList() must return a list with the same size as the source");
+
+            for (int i = 0; i < size; i++)
+            {
+                final T item = listTransform.get(i);
+                listResult.add(item != null ? item : list.get(i));
+            }
+        } else
+        {
+            for (int i = 0; i < size; i++)
+            {
+                listResult.add(transformData(list.get(i)));
+            }
+        }
+        return listResult;
+    }
+
+    @Override
+    public boolean isIndexLegal(int index)
+    {
+        return index >= 0 && index < size();
+    }
+}
@@ -0,0 +1,14 @@
+package com.sd.lib.adapter.data;
+
+/**
+ * 需要知道哪些位置正在被展示的{@link DataHolder}实现这个接口，适配器绑定数据的时候会通知它
+ */
+public interface AccessTracker
+{
+    /**
+     * position位置的数据正在被绑定
+     *
+     * @param position
+     */
+    void notifyAccess(int position);
+}
@@ -0,0 +1,649 @@
+package com.sd.lib.adapter.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把多个{@link DataHolder}按顺序拼接起来的{@link DataHolder}，例如头部、多个内容分组、尾部
+ * <p>
+ * 每个子holder的数量保存在树状数组中，全局位置和子holder位置的互相转换是O(log k)，k是子holder的数量，
+ * 子holder的数据变化会转换成全局位置再通知，所以修改一个子holder只会通知它自己的范围
+ * <p>
+ * 内部只按子holder的回调保存每个子holder的数量，不复制数据，读取的时候直接读取子holder；
+ * 子holder整体变化并且数量减少的时候，已经无法取得被删除的数据，会整体通知变化
+ *
+ * @param <T>
+ */
+public class CompositeDataHolder<T> extends AbstractDataHolder<T>
+{
+    private final List<Child> mChildren = new ArrayList<>();
+    /**
+     * 子holder数量的树状数组，下标从1开始
+     */
+    private int[] mTree = new int[1];
+    private int mSize;
+
+    private final List<T> mDataView = new AbstractList<T>()
+    {
+        @Override
+        public T get(int index)
+        {
+            return CompositeDataHolder.this.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return mSize;
+        }
+    };
+
+    public CompositeDataHolder()
+    {
+    }
+
+    public CompositeDataHolder(List<? extends DataHolder<T>> holders)
+    {
+        if (holders != null)
+        {
+            for (DataHolder<T> item : holders)
+            {
+                addHolder(item);
+            }
+        }
+    }
+
+    /**
+     * 在末尾添加子holder
+     *
+     * @param holder
+     */
+    public void addHolder(DataHolder<T> holder)
+    {
+        addHolder(mChildren.size(), holder);
+    }
+
+    /**
+     * 在指定位置添加子holder，会通知子holder的数据被添加
+     *
+     * @param index
+     * @param holder
+     */
+    public void addHolder(int index, DataHolder<T> holder)
+    {
+        if (holder == null)
+            throw new NullPointerException("holder is null");
+        if (indexOfHolder(holder) >= 0)
+            throw new IllegalArgumentException("holder has been added");
+        if (index < 0 || index > mChildren.size())
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + mChildren.size());
+
+        final Child child = new Child(holder);
+        mChildren.add(index, child);
+        rebuildTree();
+        holder.addDataChangeCallback(child);
+
+        if (child.mSize > 0)
+            getNotifier().onDataAdded(getOffset(index), obtainPayload(holder.getData(), 0, child.mSize));
+    }
+
+    /**
+     * 移除子holder，会通知子holder的数据被删除
+     *
+     * @param holder
+     * @return
+     */
+    public boolean removeHolder(DataHolder<T> holder)
+    {
+        final int index = indexOfHolder(holder);
+        if (index < 0)
+            return false;
+
+        final int offset = getOffset(index);
+        final Child child = mChildren.remove(index);
+        holder.removeDataChangeCallback(child);
+        rebuildTree();
+
+        // 子holder只是被移除，它的数据还在
+        final int count = child.mSize;
+        if (count == 1)
+            getNotifier().onDataRemoved(offset, holder.get(0));
+        else if (count > 1)
+            getNotifier().onDataRangeRemoved(offset, obtainPayload(holder.getData(), 0, count));
+        return true;
+    }
+
+    /**
+     * 返回子holder的数量
+     *
+     * @return
+     */
+    public int getHolderCount()
+    {
+        return mChildren.size();
+    }
+
+    public DataHolder<T> getHolder(int index)
+    {
+        return mChildren.get(index).mHolder;
+    }
+
+    public int indexOfHolder(DataHolder<T> holder)
+    {
+        for (int i = 0; i < mChildren.size(); i++)
+        {
+            if (mChildren.get(i).mHolder == holder)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 返回全局位置所在的子holder的位置
+     *
+     * @param position
+     * @return -1表示position不合法
+     */
+    public int getHolderIndex(int position)
+    {
+        return isIndexLegal(position) ? findChild(position) : -1;
+    }
+
+    /**
+     * 返回全局位置在子holder中的位置
+     *
+     * @param position
+     * @return -1表示position不合法
+     */
+    public int getLocalPosition(int position)
+    {
+        if (!isIndexLegal(position))
+            return -1;
+
+        return position - getOffset(findChild(position));
+    }
+
+    /**
+     * 返回子holder中的位置对应的全局位置
+     *
+     * @param holder
+     * @param localPosition
+     * @return -1表示holder不存在或者localPosition不合法
+     */
+    public int getGlobalPosition(DataHolder<T> holder, int localPosition)
+    {
+        final int index = indexOfHolder(holder);
+        if (index < 0)
+            return -1;
+        if (localPosition < 0 || localPosition >= mChildren.get(index).mSize)
+            return -1;
+
+        return getOffset(index) + localPosition;
+    }
+
+    //---------- tree start ----------
+
+    private void rebuildTree()
+    {
+        final int count = mChildren.size();
+        mTree = new int[count + 1];
+        mSize = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final Child child = mChildren.get(i);
+            child.mIndex = i;
+            mSize += child.mSize;
+
+            final int node = i + 1;
+            mTree[node] += child.mSize;
+            final int parent = node + (node & -node);
+            if (parent <= count)
+                mTree[parent] += mTree[node];
+        }
+    }
+
+    private void updateTree(int index, int delta)
+    {
+        mSize += delta;
+        for (int node = index + 1; node < mTree.length; node += node & -node)
+        {
+            mTree[node] += delta;
+        }
+    }
+
+    /**
+     * 返回index位置的子holder之前的数据数量
+     *
+     * @param index
+     * @return
+     */
+    private int getOffset(int index)
+    {
+        int sum = 0;
+        for (int node = index; node > 0; node -= node & -node)
+        {
+            sum += mTree[node];
+        }
+        return sum;
+    }
+
+    /**
+     * 返回position所在的子holder的位置，position必须合法
+     *
+     * @param position
+     * @return
+     */
+    private int findChild(int position)
+    {
+        final int count = mTree.length - 1;
+        int node = 0;
+        int step = Integer.highestOneBit(Math.max(count, 1));
+        while (step > 0)
+        {
+            final int next = node + step;
+            if (next <= count && mTree[next] <= position)
+            {
+                node = next;
+                position -= mTree[next];
+            }
+            step >>= 1;
+        }
+        return node;
+    }
+
+    //---------- tree end ----------
+
+    @Override
+    public void setDataTransform(DataTransform<T> transform)
+    {
+        for (Child item : mChildren)
+        {
+            item.mHolder.setDataTransform(transform);
+        }
+    }
+
+    //---------- modify start ----------
+
+    /**
+     * 不支持，请修改对应的子holder
+     *
+     * @param list
+     */
+    @Override
+    public void setData(List<? extends T> list)
+    {
+        throw new UnsupportedOperationException("CompositeDataHolder does not support setData, modify the child holder instead");
+    }
+
+    /**
+     * 添加到最后一个子holder
+     *
+     * @param data
+     * @return
+     */
+    @Override
+    public boolean addData(T data)
+    {
+        if (mChildren.isEmpty())
+            return false;
+
+        return mChildren.get(mChildren.size() - 1).mHolder.addData(data);
+    }
+
+    /**
+     * 添加到最后一个子holder
+     *
+     * @param list
+     * @return
+     */
+    @Override
+    public boolean addData(List<? extends T> list)
+    {
+        if (mChildren.isEmpty())
+            return false;
+
+        return mChildren.get(mChildren.size() - 1).mHolder.addData(list);
+    }
+
+    /**
+     * 添加到index所在的子holder，index等于数量的时候添加到最后一个子holder
+     *
+     * @param index
+     * @param data
+     */
+    @Override
+    public void addData(int index, T data)
+    {
+        if (index < 0 || index > mSize || mChildren.isEmpty())
+            return;
+
+        final int childIndex = index == mSize ? mChildren.size() - 1 : findChild(index);
+        mChildren.get(childIndex).mHolder.addData(index - getOffset(childIndex), data);
+    }
+
+    @Override
+    public boolean addData(int index, List<? extends T> list)
+    {
+        if (index < 0 || index > mSize || mChildren.isEmpty())
+            return false;
+
+        final int childIndex = index == mSize ? mChildren.size() - 1 : findChild(index);
+        return mChildren.get(childIndex).mHolder.addData(index - getOffset(childIndex), list);
+    }
+
+    @Override
+    public boolean removeData(T data)
+    {
+        final int index = indexOf(data);
+        return removeData(index) != null;
+    }
+
+    @Override
+    public T removeData(int index)
+    {
+        if (!isIndexLegal(index))
+            return null;
+
+        final int childIndex = findChild(index);
+        return mChildren.get(childIndex).mHolder.removeData(index - getOffset(childIndex));
+    }
+
+    @Override
+    public void updateData(int index, T data)
+    {
+        if (!isIndexLegal(index))
+            return;
+
+        final int childIndex = findChild(index);
+        mChildren.get(childIndex).mHolder.updateData(index - getOffset(childIndex), data);
+    }
+
+    @Override
+    public List<T> removeData(int index, int count)
+    {
+        final List<T> listRemoved = new ArrayList<>();
+        if (!isIndexLegal(index) || count <= 0)
+            return listRemoved;
+
+        int remain = Math.min(count, mSize - index);
+        int childIndex = findChild(index);
+        int localIndex = index - getOffset(childIndex);
+
+        beginBatch();
+        try
+        {
+            while (remain > 0)
+            {
+                final Child child = mChildren.get(childIndex);
+                final int localCount = Math.min(remain, child.mSize - localIndex);
+                if (localCount > 0)
+                {
+                    listRemoved.addAll(child.mHolder.removeData(localIndex, localCount));
+                    remain -= localCount;
+                }
+                childIndex++;
+                localIndex = 0;
+            }
+        } finally
+        {
+            commitBatch();
+        }
+        return listRemoved;
+    }
+
+    @Override
+    public int removeIf(DataPredicate<T> predicate)
+    {
+        if (predicate == null)
+            return 0;
+
+        int count = 0;
+        beginBatch();
+        try
+        {
+            for (Child item : mChildren)
+            {
+                count += item.mHolder.removeIf(predicate);
+            }
+        } finally
+        {
+            commitBatch();
+        }
+        return count;
+    }
+
+    @Override
+    public void updateData(int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return;
+
+        if (index < 0 || index + list.size() > mSize)
+            return;
+
+        int start = 0;
+        int childIndex = findChild(index);
+        int localIndex = index - getOffset(childIndex);
+
+        beginBatch();
+        try
+        {
+            while (start < list.size())
+            {
+                final Child child = mChildren.get(childIndex);
+                final int localCount = Math.min(list.size() - start, child.mSize - localIndex);
+                if (localCount > 0)
+                {
+                    child.mHolder.updateData(localIndex, new ArrayList<T>(list.subList(start, start + localCount)));
+                    start += localCount;
+                }
+                childIndex++;
+                localIndex = 0;
+            }
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void replaceAll(DataTransform<T> operator)
+    {
+        if (operator == null)
+            return;
+
+        beginBatch();
+        try
+        {
+            for (Child item : mChildren)
+            {
+                item.mHolder.replaceAll(operator);
+            }
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    /**
+     * 在同一个子holder中移动，或者从一个子holder删除后添加到另一个子holder
+     *
+     * @param fromIndex
+     * @param toIndex
+     * @return
+     */
+    @Override
+    public boolean moveData(int fromIndex, int toIndex)
+    {
+        if (!isIndexLegal(fromIndex) || !isIndexLegal(toIndex))
+            return false;
+
+        if (fromIndex == toIndex)
+            return false;
+
+        final int fromChild = findChild(fromIndex);
+        final int toChild = findChild(toIndex);
+        final int fromLocal = fromIndex - getOffset(fromChild);
+        final int toLocal = toIndex - getOffset(toChild);
+        if (fromChild == toChild)
+            return mChildren.get(fromChild).mHolder.moveData(fromLocal, toLocal);
+
+        beginBatch();
+        try
+        {
+            final T data = mChildren.get(fromChild).mHolder.removeData(fromLocal);
+            if (data == null)
+                return false;
+
+            // 从前面移到后面的时候插入到toIndex处的数据之后，和同一个holder中移动的结果一致
+            mChildren.get(toChild).mHolder.addData(fromChild < toChild ? toLocal + 1 : toLocal, data);
+        } finally
+        {
+            commitBatch();
+        }
+        return true;
+    }
+
+    //---------- modify end ----------
+
+    @Override
+    public T get(int index)
+    {
+        if (!isIndexLegal(index))
+            return null;
+
+        final int childIndex = findChild(index);
+        return mChildren.get(childIndex).mHolder.get(index - getOffset(childIndex));
+    }
+
+    @Override
+    public int size()
+    {
+        return mSize;
+    }
+
+    @Override
+    public int indexOf(T data)
+    {
+        int offset = 0;
+        for (Child item : mChildren)
+        {
+            final int index = item.mHolder.indexOf(data);
+            if (index >= 0)
+                return offset + index;
+            offset += item.mSize;
+        }
+        return -1;
+    }
+
+    @Override
+    public List<T> getData()
+    {
+        return mDataView;
+    }
+
+    /**
+     * 子holder的回调，把子holder的变化转换成全局位置后通知
+     */
+    private final class Child implements PayloadCallback<T>
+    {
+        final DataHolder<T> mHolder;
+        /**
+         * 按回调记录的子holder的数量
+         */
+        int mSize;
+        int mIndex;
+
+        Child(DataHolder<T> holder)
+        {
+            mHolder = holder;
+            mSize = holder.size();
+        }
+
+        private int offset()
+        {
+            return getOffset(mIndex);
+        }
+
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            final int oldSize = mSize;
+            final int newSize = list.size();
+            mSize = newSize;
+            updateTree(mIndex, newSize - oldSize);
+
+            // 只在自己的范围内通知，重叠的部分通知变化，多出的部分通知添加或者删除
+            final int offset = offset();
+            final int common = Math.min(oldSize, newSize);
+            if (common == 1)
+                getNotifier().onDataChanged(offset, list.get(0));
+            else if (common > 1)
+                getNotifier().onDataRangeChanged(offset, obtainPayload(list, 0, common));
+
+            if (newSize > oldSize)
+            {
+                getNotifier().onDataAdded(offset + oldSize, obtainPayload(list, oldSize, newSize - oldSize));
+            } else if (newSize < oldSize)
+            {
+                // 被删除的数据已经不存在了，用null占位
+                final int count = oldSize - newSize;
+                if (count == 1)
+                    getNotifier().onDataRemoved(offset + newSize, null);
+                else
+                    getNotifier().onDataRangeRemoved(offset + newSize, Collections.<T>nCopies(count, null));
+            }
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            getNotifier().onDataChanged(offset() + index, data);
+        }
+
+        @Override
+        public void onDataChanged(int index, T data, Object payload)
+        {
+            notifyDataChanged(offset() + index, data, payload);
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            mSize += list.size();
+            updateTree(mIndex, list.size());
+            getNotifier().onDataAdded(offset() + index, list);
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            mSize--;
+            updateTree(mIndex, -1);
+            getNotifier().onDataRemoved(offset() + index, data);
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            getNotifier().onDataRangeChanged(offset() + index, list);
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            mSize -= list.size();
+            updateTree(mIndex, -list.size());
+            getNotifier().onDataRangeRemoved(offset() + index, list);
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            final int offset = offset();
+            getNotifier().onDataMoved(offset + fromIndex, offset + toIndex, data);
+        }
+    }
+}
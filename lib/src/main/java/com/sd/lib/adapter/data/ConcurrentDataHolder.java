@@ -0,0 +1,601 @@
+package com.sd.lib.adapter.data;
+
+import com.sd.lib.adapter.data.diff.DiffCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 可以在任意线程修改的{@link DataHolder}
+ * <p>
+ * 修改操作会放入无锁队列，然后通过{@link Scheduler}在UI线程把队列中的修改一次性应用到内部的{@link DataHolder}，
+ * 应用过程中的数据变化会合并后再通知回调，读取操作直接读取内部的{@link DataHolder}，不会阻塞，
+ * 读取到的是最后一次应用之后的数据，所以读取和添加回调都应该在UI线程
+ * <p>
+ * 由于修改是异步应用的，修改方法的返回值只表示修改是否被接受，例如{@link #removeData(int)}总是返回null，
+ * 如果需要在修改的时候读取数据，可以通过{@link #post(Mutation)}提交一个在UI线程执行的修改
+ * <p>
+ * 按位置的修改例如{@link #removeData(int)}，位置是按应用时的数据计算的，不是调用时的数据，前面的修改可能让位置失效，
+ * 失效的修改抛出的异常交给{@link ErrorHandler}处理，不影响队列中其他的修改
+ * <p>
+ * {@link #beginBatch()}和{@link #commitBatch()}按线程计数，批量修改中提交的修改先保存在调用线程，
+ * 最外层提交的时候作为一个修改放入队列，保证同一个批量修改在一次应用中完成
+ *
+ * @param <T>
+ */
+public class ConcurrentDataHolder<T> implements DataHolder<T>
+{
+    private final DataHolder<T> mHolder;
+    private final Scheduler mScheduler;
+
+    private final Queue<Mutation<T>> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    private volatile ErrorHandler<T> mErrorHandler;
+    /**
+     * 每个线程还未提交的批量修改
+     */
+    private final ThreadLocal<BatchMutation> mBatch = new ThreadLocal<>();
+
+    private final Runnable mApplyTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mScheduled.set(false);
+            flush();
+        }
+    };
+
+    /**
+     * 使用{@link ListDataHolder}保存数据，在主线程应用修改
+     */
+    public ConcurrentDataHolder()
+    {
+        this(new ListDataHolder<T>(), MainThreadScheduler.getInstance());
+    }
+
+    /**
+     * @param holder    实际保存数据的holder，只会在scheduler的线程中被修改
+     * @param scheduler 应用修改的调度器
+     */
+    public ConcurrentDataHolder(DataHolder<T> holder, Scheduler scheduler)
+    {
+        if (holder == null)
+            throw new NullPointerException("holder is null");
+        if (scheduler == null)
+            throw new NullPointerException("scheduler is null");
+
+        mHolder = holder;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * 提交一个修改，可以在任意线程调用，修改会在scheduler的线程中执行
+     *
+     * @param mutation
+     */
+    public void post(Mutation<T> mutation)
+    {
+        if (mutation == null)
+            return;
+
+        final BatchMutation batch = mBatch.get();
+        if (batch != null)
+        {
+            batch.mMutations.add(mutation);
+            return;
+        }
+
+        mQueue.offer(mutation);
+        if (mScheduled.compareAndSet(false, true))
+            mScheduler.schedule(mApplyTask);
+    }
+
+    /**
+     * 设置修改失败的处理器，没有设置的时候，应用完队列中其他的修改之后抛出第一个异常
+     *
+     * @param handler
+     */
+    public void setErrorHandler(ErrorHandler<T> handler)
+    {
+        mErrorHandler = handler;
+    }
+
+    /**
+     * 马上应用队列中的所有修改，只能在scheduler的线程中调用
+     */
+    public void flush()
+    {
+        if (mQueue.isEmpty())
+            return;
+
+        RuntimeException error = null;
+        mHolder.beginBatch();
+        try
+        {
+            Mutation<T> mutation;
+            while ((mutation = mQueue.poll()) != null)
+            {
+                try
+                {
+                    mutation.apply(mHolder);
+                } catch (RuntimeException e)
+                {
+                    final ErrorHandler<T> handler = mErrorHandler;
+                    if (handler != null)
+                        handler.onError(mutation, e);
+                    else if (error == null)
+                        error = e;
+                }
+            }
+        } finally
+        {
+            mHolder.commitBatch();
+            // 异常中断的时候，队列中剩下的修改留到下次调度
+            if (!mQueue.isEmpty() && mScheduled.compareAndSet(false, true))
+                mScheduler.schedule(mApplyTask);
+        }
+
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * 是否有还未应用的修改
+     *
+     * @return
+     */
+    public boolean hasPendingMutations()
+    {
+        return !mQueue.isEmpty();
+    }
+
+    private static <T> List<T> copyList(List<? extends T> list)
+    {
+        return list == null ? null : new ArrayList<T>(list);
+    }
+
+    @Override
+    public void addDataChangeCallback(DataChangeCallback<T> callback)
+    {
+        mHolder.addDataChangeCallback(callback);
+    }
+
+    @Override
+    public void removeDataChangeCallback(DataChangeCallback<T> callback)
+    {
+        mHolder.removeDataChangeCallback(callback);
+    }
+
+    @Override
+    public void setDataTransform(final DataTransform<T> transform)
+    {
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.setDataTransform(transform);
+            }
+        });
+    }
+
+    @Override
+    public void setDiffCallback(final DiffCallback<T> callback)
+    {
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.setDiffCallback(callback);
+            }
+        });
+    }
+
+    /**
+     * 开始批量修改，之后当前线程提交的修改先保存下来，直到最外层的{@link #commitBatch()}
+     */
+    @Override
+    public void beginBatch()
+    {
+        BatchMutation batch = mBatch.get();
+        if (batch == null)
+        {
+            batch = new BatchMutation();
+            mBatch.set(batch);
+        }
+        batch.mDepth++;
+    }
+
+    /**
+     * 提交批量修改，最外层的提交会把当前线程保存的修改作为一个修改放入队列
+     */
+    @Override
+    public void commitBatch()
+    {
+        final BatchMutation batch = mBatch.get();
+        if (batch == null)
+            throw new IllegalStateException("commitBatch() called without beginBatch()");
+
+        batch.mDepth--;
+        if (batch.mDepth > 0)
+            return;
+
+        mBatch.remove();
+        if (!batch.mMutations.isEmpty())
+            post(batch);
+    }
+
+    /**
+     * runnable在调用线程执行，其中的修改会在同一次应用中合并通知
+     *
+     * @param runnable
+     */
+    @Override
+    public void batch(Runnable runnable)
+    {
+        beginBatch();
+        try
+        {
+            runnable.run();
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    //---------- modify start ----------
+
+    @Override
+    public void setData(List<? extends T> list)
+    {
+        final List<T> listCopy = copyList(list);
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.setData(listCopy);
+            }
+        });
+    }
+
+    @Override
+    public boolean addData(final T data)
+    {
+        if (data == null)
+            return false;
+
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.addData(data);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean addData(List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return false;
+
+        final List<T> listCopy = copyList(list);
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.addData(listCopy);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void addData(final int index, final T data)
+    {
+        if (data == null)
+            return;
+
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.addData(index, data);
+            }
+        });
+    }
+
+    @Override
+    public boolean addData(final int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return false;
+
+        final List<T> listCopy = copyList(list);
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.addData(index, listCopy);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean removeData(final T data)
+    {
+        if (data == null)
+            return false;
+
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.removeData(data);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 异步删除，总是返回null
+     *
+     * @param index
+     * @return
+     */
+    @Override
+    public T removeData(final int index)
+    {
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.removeData(index);
+            }
+        });
+        return null;
+    }
+
+    @Override
+    public void updateData(final int index, final T data)
+    {
+        if (data == null)
+            return;
+
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.updateData(index, data);
+            }
+        });
+    }
+
+    @Override
+    public void updateData(final int index, final T data, final Object payload)
+    {
+        if (data == null)
+            return;
+
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.updateData(index, data, payload);
+            }
+        });
+    }
+
+    /**
+     * 异步删除，总是返回空的集合
+     *
+     * @param index
+     * @param count
+     * @return
+     */
+    @Override
+    public List<T> removeData(final int index, final int count)
+    {
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.removeData(index, count);
+            }
+        });
+        return new ArrayList<>();
+    }
+
+    /**
+     * 异步删除，总是返回0，predicate会在scheduler的线程中执行
+     *
+     * @param predicate
+     * @return
+     */
+    @Override
+    public int removeIf(final DataPredicate<T> predicate)
+    {
+        if (predicate == null)
+            return 0;
+
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.removeIf(predicate);
+            }
+        });
+        return 0;
+    }
+
+    @Override
+    public void updateData(final int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return;
+
+        final List<T> listCopy = copyList(list);
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.updateData(index, listCopy);
+            }
+        });
+    }
+
+    /**
+     * operator会在scheduler的线程中执行
+     *
+     * @param operator
+     */
+    @Override
+    public void replaceAll(final DataTransform<T> operator)
+    {
+        if (operator == null)
+            return;
+
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.replaceAll(operator);
+            }
+        });
+    }
+
+    @Override
+    public boolean moveData(final int fromIndex, final int toIndex)
+    {
+        post(new Mutation<T>()
+        {
+            @Override
+            public void apply(DataHolder<T> holder)
+            {
+                holder.moveData(fromIndex, toIndex);
+            }
+        });
+        return true;
+    }
+
+    //---------- modify end ----------
+
+    @Override
+    public boolean isIndexLegal(int index)
+    {
+        return mHolder.isIndexLegal(index);
+    }
+
+    @Override
+    public T get(int index)
+    {
+        return mHolder.get(index);
+    }
+
+    @Override
+    public int size()
+    {
+        return mHolder.size();
+    }
+
+    @Override
+    public boolean isInBatch()
+    {
+        return mHolder.isInBatch();
+    }
+
+    @Override
+    public int indexOf(T data)
+    {
+        return mHolder.indexOf(data);
+    }
+
+    @Override
+    public List<T> getData()
+    {
+        return mHolder.getData();
+    }
+
+    /**
+     * 一次批量修改中提交的修改，按顺序执行，其中一个失败不影响后面的修改
+     */
+    private final class BatchMutation implements Mutation<T>
+    {
+        private final List<Mutation<T>> mMutations = new ArrayList<>();
+        private int mDepth;
+
+        @Override
+        public void apply(DataHolder<T> holder)
+        {
+            RuntimeException error = null;
+            for (Mutation<T> mutation : mMutations)
+            {
+                try
+                {
+                    mutation.apply(holder);
+                } catch (RuntimeException e)
+                {
+                    final ErrorHandler<T> handler = mErrorHandler;
+                    if (handler != null)
+                        handler.onError(mutation, e);
+                    else if (error == null)
+                        error = e;
+                }
+            }
+
+            if (error != null)
+                throw error;
+        }
+    }
+
+    /**
+     * 在scheduler的线程中执行的修改
+     *
+     * @param <T>
+     */
+    public interface Mutation<T>
+    {
+        /**
+         * 修改数据
+         *
+         * @param holder 实际保存数据的holder
+         */
+        void apply(DataHolder<T> holder);
+    }
+
+    /**
+     * 修改失败的处理器，在scheduler的线程中回调
+     *
+     * @param <T>
+     */
+    public interface ErrorHandler<T>
+    {
+        /**
+         * 修改抛出了异常，这个修改被跳过
+         *
+         * @param mutation
+         * @param e
+         */
+        void onError(Mutation<T> mutation, RuntimeException e);
+    }
+}
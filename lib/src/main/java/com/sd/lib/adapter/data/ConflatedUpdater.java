@@ -0,0 +1,196 @@
+package com.sd.lib.adapter.data;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并高频更新的工具，同一个key在一次调度之前的多次更新只保留最后一次
+ * <p>
+ * {@link #post(Object)}可以在任意线程调用，更新按key保存在并发的Map中，然后通过{@link Scheduler}
+ * 在UI线程把所有更新按位置排序后在一次批量修改中应用，相邻位置的变化会合并成一个范围通知
+ *
+ * @param <K> key类型
+ * @param <T> 实体类型
+ */
+public class ConflatedUpdater<K, T>
+{
+    private final KeyedDataHolder<K, T> mHolder;
+    private final Scheduler mScheduler;
+
+    private final ConcurrentMap<K, T> mPending = new ConcurrentHashMap<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    private final AtomicLong mPostedCount = new AtomicLong();
+    private final AtomicLong mConflatedCount = new AtomicLong();
+    private long mAppliedCount;
+    private long mDroppedCount;
+
+    private final Runnable mApplyTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mScheduled.set(false);
+            flush();
+        }
+    };
+
+    /**
+     * 在主线程应用更新
+     *
+     * @param holder
+     */
+    public ConflatedUpdater(KeyedDataHolder<K, T> holder)
+    {
+        this(holder, MainThreadScheduler.getInstance());
+    }
+
+    /**
+     * @param holder    要更新的holder，通过holder的key找到数据的位置
+     * @param scheduler 应用更新的调度器，例如每帧调度一次
+     */
+    public ConflatedUpdater(KeyedDataHolder<K, T> holder, Scheduler scheduler)
+    {
+        if (holder == null)
+            throw new NullPointerException("holder is null");
+        if (scheduler == null)
+            throw new NullPointerException("scheduler is null");
+
+        mHolder = holder;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * 提交一个更新，可以在任意线程调用，下次调度的时候更新holder中key相同的数据，
+     * 在此之前同一个key的更新会被覆盖
+     *
+     * @param data
+     */
+    public void post(T data)
+    {
+        if (data == null)
+            return;
+
+        mPostedCount.incrementAndGet();
+        if (mPending.put(mHolder.getKeyExtractor().getKey(data), data) != null)
+            mConflatedCount.incrementAndGet();
+
+        if (mScheduled.compareAndSet(false, true))
+            mScheduler.schedule(mApplyTask);
+    }
+
+    /**
+     * 马上应用所有的更新，只能在scheduler的线程中调用
+     */
+    public void flush()
+    {
+        if (mPending.isEmpty())
+            return;
+
+        final int capacity = mPending.size();
+        long[] arrOrder = new long[capacity];
+        Object[] arrData = new Object[capacity];
+        int count = 0;
+
+        final Iterator<Map.Entry<K, T>> it = mPending.entrySet().iterator();
+        while (it.hasNext())
+        {
+            final Map.Entry<K, T> entry = it.next();
+            final T data = entry.getValue();
+            // 只有值没有被新的更新覆盖的时候才移除，被覆盖的值留到下次调度
+            if (!mPending.remove(entry.getKey(), data))
+                continue;
+
+            final int index = mHolder.indexOfKey(entry.getKey());
+            if (index < 0)
+            {
+                mDroppedCount++;
+                continue;
+            }
+
+            if (count == arrOrder.length)
+            {
+                arrOrder = Arrays.copyOf(arrOrder, count * 2);
+                arrData = Arrays.copyOf(arrData, count * 2);
+            }
+            // 高32位是位置，低32位是数据的下标，排序后按位置从小到大应用
+            arrOrder[count] = ((long) index << 32) | count;
+            arrData[count] = data;
+            count++;
+        }
+
+        if (count == 0)
+            return;
+
+        Arrays.sort(arrOrder, 0, count);
+        mHolder.beginBatch();
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                final int index = (int) (arrOrder[i] >>> 32);
+                final T data = (T) arrData[(int) arrOrder[i]];
+                mHolder.updateData(index, data);
+            }
+        } finally
+        {
+            mHolder.commitBatch();
+        }
+        mAppliedCount += count;
+    }
+
+    /**
+     * 是否有还未应用的更新
+     *
+     * @return
+     */
+    public boolean hasPendingUpdates()
+    {
+        return !mPending.isEmpty();
+    }
+
+    /**
+     * 返回提交的更新数量
+     *
+     * @return
+     */
+    public long getPostedCount()
+    {
+        return mPostedCount.get();
+    }
+
+    /**
+     * 返回被后面的更新覆盖的更新数量
+     *
+     * @return
+     */
+    public long getConflatedCount()
+    {
+        return mConflatedCount.get();
+    }
+
+    /**
+     * 返回应用到holder的更新数量
+     *
+     * @return
+     */
+    public long getAppliedCount()
+    {
+        return mAppliedCount;
+    }
+
+    /**
+     * 返回应用的时候holder中已经不存在对应key的更新数量
+     *
+     * @return
+     */
+    public long getDroppedCount()
+    {
+        return mDroppedCount;
+    }
+}
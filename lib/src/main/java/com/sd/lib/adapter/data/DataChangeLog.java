@@ -0,0 +1,527 @@
+package com.sd.lib.adapter.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据变化记录，记录收到的数据变化回调，并合并相邻或者重叠的操作，
+ * 通过{@link #replay(DataHolder.DataChangeCallback)}把合并后的操作按顺序通知给目标回调
+ *
+ * @param <T>
+ */
+public class DataChangeLog<T> implements DataHolder.PayloadCallback<T>
+{
+    private static final int TYPE_CHANGE = 1;
+    private static final int TYPE_ADD = 2;
+    private static final int TYPE_REMOVE = 3;
+    private static final int TYPE_MOVE = 4;
+
+    private final List<Op<T>> mListOp = new ArrayList<>();
+    /**
+     * 不为null表示记录了整个数据集的变化，之后的操作直接作用在这个数据集上
+     */
+    private List<T> mListAll;
+
+    /**
+     * 是否没有记录任何变化
+     *
+     * @return
+     */
+    public boolean isEmpty()
+    {
+        return mListAll == null && mListOp.isEmpty();
+    }
+
+    /**
+     * 返回合并后的操作数量，记录了整个数据集变化的时候返回1
+     *
+     * @return
+     */
+    public int size()
+    {
+        return mListAll != null ? 1 : mListOp.size();
+    }
+
+    /**
+     * 清空记录
+     */
+    public void clear()
+    {
+        mListOp.clear();
+        mListAll = null;
+    }
+
+    /**
+     * 按顺序把记录的操作通知给回调，并清空记录
+     *
+     * @param callback
+     */
+    public void replay(DataHolder.DataChangeCallback<T> callback)
+    {
+        if (mListAll != null)
+        {
+            final List<T> list = mListAll;
+            clear();
+            callback.onDataChanged(list);
+            return;
+        }
+
+        final List<Op<T>> listOp = new ArrayList<>(mListOp);
+        clear();
+
+        for (Op<T> op : listOp)
+        {
+            final int count = op.mItems.size();
+            switch (op.mType)
+            {
+                case TYPE_CHANGE:
+                    if (op.mPayloads != null)
+                        replayChange(op, callback);
+                    else if (count == 1)
+                        callback.onDataChanged(op.mIndex, op.mItems.get(0));
+                    else
+                        callback.onDataRangeChanged(op.mIndex, op.mItems);
+                    break;
+                case TYPE_ADD:
+                    callback.onDataAdded(op.mIndex, op.mItems);
+                    break;
+                case TYPE_REMOVE:
+                    if (count == 1)
+                        callback.onDataRemoved(op.mIndex, op.mItems.get(0));
+                    else
+                        callback.onDataRangeRemoved(op.mIndex, op.mItems);
+                    break;
+                case TYPE_MOVE:
+                    callback.onDataMoved(op.mIndex, op.mToIndex, op.mItems.get(0));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 通知带payload的修改，连续的整个数据变化合并为一个范围
+     *
+     * @param op
+     * @param callback
+     */
+    private static <T> void replayChange(Op<T> op, DataHolder.DataChangeCallback<T> callback)
+    {
+        final int count = op.mItems.size();
+        int i = 0;
+        while (i < count)
+        {
+            final Object payload = op.mPayloads.get(i);
+            if (payload != null)
+            {
+                if (callback instanceof DataHolder.PayloadCallback)
+                    ((DataHolder.PayloadCallback<T>) callback).onDataChanged(op.mIndex + i, op.mItems.get(i), payload);
+                else
+                    callback.onDataChanged(op.mIndex + i, op.mItems.get(i));
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            while (end < count && op.mPayloads.get(end) == null)
+            {
+                end++;
+            }
+
+            if (end - i == 1)
+                callback.onDataChanged(op.mIndex + i, op.mItems.get(i));
+            else
+                callback.onDataRangeChanged(op.mIndex + i, op.mItems.subList(i, end));
+            i = end;
+        }
+    }
+
+    private Op<T> getLastOp()
+    {
+        return mListOp.isEmpty() ? null : mListOp.get(mListOp.size() - 1);
+    }
+
+    private void removeLastOp()
+    {
+        mListOp.remove(mListOp.size() - 1);
+    }
+
+    @Override
+    public void onDataChanged(List<T> list)
+    {
+        mListOp.clear();
+        mListAll = new ArrayList<>(list);
+    }
+
+    @Override
+    public void onDataChanged(int index, T data)
+    {
+        onDataChanged(index, data, null);
+    }
+
+    @Override
+    public void onDataChanged(int index, T data, Object payload)
+    {
+        final List<T> list = new ArrayList<>(1);
+        list.add(data);
+        recordChange(index, list, payload);
+    }
+
+    @Override
+    public void onDataAdded(int index, List<T> list)
+    {
+        if (list.isEmpty())
+            return;
+
+        if (mListAll != null)
+        {
+            mListAll.addAll(index, list);
+            return;
+        }
+
+        final Op<T> last = getLastOp();
+        if (last != null && last.mType == TYPE_ADD)
+        {
+            if (index >= last.mIndex && index <= last.mIndex + last.mItems.size())
+            {
+                last.mItems.addAll(index - last.mIndex, list);
+                return;
+            }
+        }
+
+        mListOp.add(new Op<>(TYPE_ADD, index, list));
+    }
+
+    @Override
+    public void onDataRemoved(int index, T data)
+    {
+        final List<T> list = new ArrayList<>(1);
+        list.add(data);
+        onDataRangeRemoved(index, list);
+    }
+
+    @Override
+    public void onDataRangeChanged(int index, List<T> list)
+    {
+        recordChange(index, list, null);
+    }
+
+    /**
+     * 记录修改，相同位置的payload不同的时候不合并
+     *
+     * @param index
+     * @param list
+     * @param payload null-整个数据发生变化
+     */
+    private void recordChange(int index, List<T> list, Object payload)
+    {
+        if (list.isEmpty())
+            return;
+
+        if (mListAll != null)
+        {
+            for (int i = 0; i < list.size(); i++)
+            {
+                mListAll.set(index + i, list.get(i));
+            }
+            return;
+        }
+
+        final int end = index + list.size();
+        final Op<T> last = getLastOp();
+        if (last != null)
+        {
+            final int lastStart = last.mIndex;
+            final int lastEnd = lastStart + last.mItems.size();
+            if (last.mType == TYPE_ADD && index >= lastStart && end <= lastEnd)
+            {
+                // 修改的是还未通知的新增数据
+                for (int i = 0; i < list.size(); i++)
+                {
+                    last.mItems.set(index - lastStart + i, list.get(i));
+                }
+                return;
+            }
+
+            if (last.mType == TYPE_CHANGE && index <= lastEnd && end >= lastStart
+                    && canMergePayload(last, Math.max(index, lastStart) - lastStart, Math.min(end, lastEnd) - lastStart, payload))
+            {
+                // 相邻或者重叠的修改合并为一个范围
+                final int start = Math.min(index, lastStart);
+                final int mergeEnd = Math.max(end, lastEnd);
+                final List<T> listMerge = new ArrayList<>(mergeEnd - start);
+                final boolean hasPayload = payload != null || last.mPayloads != null;
+                final List<Object> listPayload = hasPayload ? new ArrayList<>(mergeEnd - start) : null;
+                for (int i = start; i < mergeEnd; i++)
+                {
+                    final boolean inNew = i >= index && i < end;
+                    final boolean inLast = i >= lastStart && i < lastEnd;
+                    listMerge.add(inNew ? list.get(i - index) : last.mItems.get(i - lastStart));
+                    if (hasPayload)
+                    {
+                        if (inNew && inLast)
+                            listPayload.add(mergePayload(last.getPayload(i - lastStart), payload));
+                        else
+                            listPayload.add(inNew ? payload : last.getPayload(i - lastStart));
+                    }
+                }
+                last.mIndex = start;
+                last.mItems = listMerge;
+                last.mPayloads = listPayload;
+                return;
+            }
+        }
+
+        if (mergeChange(index, list, payload))
+            return;
+
+        final Op<T> op = new Op<>(TYPE_CHANGE, index, list);
+        if (payload != null)
+            op.setPayload(0, list.size(), payload);
+        mListOp.add(op);
+    }
+
+    /**
+     * 从后往前查找包含修改范围的新增或者修改操作，经过的新增和删除操作会换算修改的位置
+     *
+     * @param index
+     * @param list
+     * @param payload
+     * @return true-修改已经合并到之前的操作中
+     */
+    private boolean mergeChange(int index, List<T> list, Object payload)
+    {
+        int start = index;
+        int end = index + list.size();
+        for (int i = mListOp.size() - 1; i >= 0; i--)
+        {
+            final Op<T> op = mListOp.get(i);
+            final int opStart = op.mIndex;
+            final int opCount = op.mItems.size();
+            final int opEnd = opStart + opCount;
+
+            if (op.mType == TYPE_ADD || op.mType == TYPE_CHANGE)
+            {
+                if (start >= opStart && end <= opEnd)
+                {
+                    if (op.mType == TYPE_CHANGE && !canMergePayload(op, start - opStart, end - opStart, payload))
+                        return false;
+
+                    for (int j = 0; j < list.size(); j++)
+                    {
+                        op.mItems.set(start - opStart + j, list.get(j));
+                    }
+                    if (op.mType == TYPE_CHANGE)
+                    {
+                        for (int j = start - opStart; j < end - opStart; j++)
+                        {
+                            op.setPayload(j, j + 1, mergePayload(op.getPayload(j), payload));
+                        }
+                    }
+                    return true;
+                }
+
+                if (end <= opStart)
+                    continue;
+
+                if (start >= opEnd)
+                {
+                    if (op.mType == TYPE_ADD)
+                    {
+                        // 换算为新增之前的位置
+                        start -= opCount;
+                        end -= opCount;
+                    }
+                    continue;
+                }
+                // 部分重叠，合并到更前面的操作会被这个操作的旧数据覆盖
+                return false;
+            } else if (op.mType == TYPE_REMOVE)
+            {
+                if (end <= opStart)
+                    continue;
+
+                if (start >= opStart)
+                {
+                    // 换算为删除之前的位置
+                    start += opCount;
+                    end += opCount;
+                    continue;
+                }
+                return false;
+            } else
+            {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * op的[start, end)范围是否可以和payload合并，两个不同的payload不合并，按顺序分别通知
+     *
+     * @param op
+     * @param start
+     * @param end
+     * @param payload
+     * @return
+     */
+    private static boolean canMergePayload(Op<?> op, int start, int end, Object payload)
+    {
+        if (payload == null || op.mPayloads == null)
+            return true;
+
+        for (int i = start; i < end; i++)
+        {
+            final Object old = op.mPayloads.get(i);
+            if (old != null && !old.equals(payload))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 有一个是整个数据变化的时候合并为整个数据变化
+     *
+     * @param old
+     * @param payload
+     * @return
+     */
+    private static Object mergePayload(Object old, Object payload)
+    {
+        if (old == null || payload == null)
+            return null;
+        return old;
+    }
+
+    @Override
+    public void onDataRangeRemoved(int index, List<T> list)
+    {
+        if (list.isEmpty())
+            return;
+
+        if (mListAll != null)
+        {
+            mListAll.subList(index, index + list.size()).clear();
+            return;
+        }
+
+        List<T> listRemove = new ArrayList<>(list);
+        while (!listRemove.isEmpty())
+        {
+            final Op<T> last = getLastOp();
+            if (last == null)
+                break;
+
+            final int count = listRemove.size();
+            final int lastStart = last.mIndex;
+            final int lastCount = last.mItems.size();
+
+            if (last.mType == TYPE_REMOVE)
+            {
+                if (lastStart >= index && lastStart <= index + count)
+                {
+                    // 删除的范围和上一次删除的范围相连
+                    final List<T> listMerge = new ArrayList<>(count + lastCount);
+                    listMerge.addAll(listRemove.subList(0, lastStart - index));
+                    listMerge.addAll(last.mItems);
+                    listMerge.addAll(listRemove.subList(lastStart - index, count));
+                    last.mIndex = index;
+                    last.mItems = listMerge;
+                    return;
+                }
+                break;
+            } else if (last.mType == TYPE_ADD)
+            {
+                if (index >= lastStart && index + count <= lastStart + lastCount)
+                {
+                    // 删除的是还未通知的新增数据
+                    last.mItems.subList(index - lastStart, index - lastStart + count).clear();
+                    if (last.mItems.isEmpty())
+                        removeLastOp();
+                    return;
+                }
+
+                if (lastStart >= index && lastStart + lastCount <= index + count)
+                {
+                    // 删除的范围包含了还未通知的新增数据，抵消新增之后继续和前面的操作合并
+                    final List<T> listLeft = new ArrayList<>(count - lastCount);
+                    listLeft.addAll(listRemove.subList(0, lastStart - index));
+                    listLeft.addAll(listRemove.subList(lastStart - index + lastCount, count));
+                    removeLastOp();
+                    listRemove = listLeft;
+                    continue;
+                }
+                break;
+            } else
+            {
+                break;
+            }
+        }
+
+        if (!listRemove.isEmpty())
+            mListOp.add(new Op<>(TYPE_REMOVE, index, listRemove));
+    }
+
+    @Override
+    public void onDataMoved(int fromIndex, int toIndex, T data)
+    {
+        if (mListAll != null)
+        {
+            mListAll.add(toIndex, mListAll.remove(fromIndex));
+            return;
+        }
+
+        final List<T> list = new ArrayList<>(1);
+        list.add(data);
+
+        final Op<T> op = new Op<>(TYPE_MOVE, fromIndex, list);
+        op.mToIndex = toIndex;
+        mListOp.add(op);
+    }
+
+    private static final class Op<T>
+    {
+        final int mType;
+        int mIndex;
+        int mToIndex;
+        List<T> mItems;
+        /**
+         * 修改操作每个位置的payload，null表示所有位置都是整个数据变化
+         */
+        List<Object> mPayloads;
+
+        Op(int type, int index, List<T> items)
+        {
+            mType = type;
+            mIndex = index;
+            mItems = new ArrayList<>(items);
+        }
+
+        Object getPayload(int index)
+        {
+            return mPayloads == null ? null : mPayloads.get(index);
+        }
+
+        void setPayload(int start, int end, Object payload)
+        {
+            if (mPayloads == null)
+            {
+                if (payload == null)
+                    return;
+
+                mPayloads = new ArrayList<>(mItems.size());
+                for (int i = 0; i < mItems.size(); i++)
+                {
+                    mPayloads.add(null);
+                }
+            }
+
+            for (int i = start; i < end; i++)
+            {
+                mPayloads.set(i, payload);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.sd.lib.adapter.data;
 
+import com.sd.lib.adapter.data.diff.DiffCallback;
+
 import java.util.List;
 
 public interface DataHolder<T>
@@ -25,6 +27,39 @@ public interface DataHolder<T>
      */
     void setDataTransform(DataTransform<T> transform);
 
+    /**
+     * 设置数据比较器，设置后{@link #setData(List)}会比较新旧数据集，只通知发生变化的部分，
+     * 被判定为同一个item并且内容相同的数据不会通知回调，数据量大的时候建议使用{@link com.sd.lib.adapter.data.diff.KeyedDiffCallback}
+     *
+     * @param callback null-不比较，直接通知数据集发生变化
+     */
+    void setDiffCallback(DiffCallback<T> callback);
+
+    /**
+     * 开始批量修改，在{@link #commitBatch()}之前的修改不会马上通知回调，
+     * 而是记录下来合并相邻或者重叠的操作，提交的时候统一通知，可以嵌套调用
+     */
+    void beginBatch();
+
+    /**
+     * 提交批量修改，最外层的提交会把合并后的操作通知给回调
+     */
+    void commitBatch();
+
+    /**
+     * 批量修改，runnable中的修改会在执行结束后合并通知
+     *
+     * @param runnable
+     */
+    void batch(Runnable runnable);
+
+    /**
+     * 是否在批量修改中，批量修改中的变化还没有通知回调，此时读取到的数据和回调收到的不一致
+     *
+     * @return
+     */
+    boolean isInBatch();
+
     //---------- modify start ----------
 
     /**
@@ -91,6 +126,57 @@ public interface DataHolder<T>
      */
     void updateData(int index, T data);
 
+    /**
+     * 更新index位置的数据，payload描述了数据中变化的部分，
+     * 会通过{@link PayloadCallback#onDataChanged(int, Object, Object)}通知，用来局部刷新
+     *
+     * @param index
+     * @param data
+     * @param payload null-整个数据发生变化
+     */
+    void updateData(int index, T data, Object payload);
+
+    /**
+     * 移除index位置开始的count个数据
+     *
+     * @param index
+     * @param count
+     * @return 被移除的数据
+     */
+    List<T> removeData(int index, int count);
+
+    /**
+     * 移除所有满足条件的数据
+     *
+     * @param predicate
+     * @return 移除的数量
+     */
+    int removeIf(DataPredicate<T> predicate);
+
+    /**
+     * 更新index位置开始的数据
+     *
+     * @param index
+     * @param list
+     */
+    void updateData(int index, List<? extends T> list);
+
+    /**
+     * 用operator的返回值替换所有数据
+     *
+     * @param operator 返回null或者原对象-不替换
+     */
+    void replaceAll(DataTransform<T> operator);
+
+    /**
+     * 把fromIndex位置的数据移动到toIndex位置
+     *
+     * @param fromIndex
+     * @param toIndex
+     * @return
+     */
+    boolean moveData(int fromIndex, int toIndex);
+
     //---------- modify end ----------
 
     /**
@@ -133,6 +219,8 @@ public interface DataHolder<T>
 
     /**
      * 数据变化回调
+     * <p>
+     * 回调方法中的list是数据的只读视图，只在回调方法执行期间有效，如果需要保存请复制一份
      *
      * @param <T>
      */
@@ -165,9 +253,80 @@ public interface DataHolder<T>
          * index位置的数据被删除了
          *
          * @param index
-         * @param data
+         * @param data  被删除的数据，已经无法获取的时候为null，例如{@link CompositeDataHolder}中的子holder整体变少
          */
         void onDataRemoved(int index, T data);
+
+        /**
+         * index位置开始的数据发生变化
+         *
+         * @param index
+         * @param list 变化后的数据
+         */
+        void onDataRangeChanged(int index, List<T> list);
+
+        /**
+         * index位置开始的数据被删除了
+         *
+         * @param index
+         * @param list 被删除的数据，已经无法获取的数据为null
+         */
+        void onDataRangeRemoved(int index, List<T> list);
+
+        /**
+         * fromIndex位置的数据被移动到toIndex位置
+         *
+         * @param fromIndex
+         * @param toIndex
+         * @param data
+         */
+        void onDataMoved(int fromIndex, int toIndex, T data);
+    }
+
+    /**
+     * 可以接收payload的数据变化回调，带payload的变化不会再触发{@link #onDataChanged(int, Object)}
+     *
+     * @param <T>
+     */
+    interface PayloadCallback<T> extends DataChangeCallback<T>
+    {
+        /**
+         * index位置的数据发生了局部变化
+         *
+         * @param index
+         * @param data
+         * @param payload 不为null
+         */
+        void onDataChanged(int index, T data, Object payload);
+    }
+
+    /**
+     * 可以接收批量修改提交的数据变化回调
+     *
+     * @param <T>
+     */
+    interface BatchCallback<T> extends DataChangeCallback<T>
+    {
+        /**
+         * 最外层的批量修改提交了，合并后的变化已经通知完，此时读取到的数据和回调收到的一致
+         */
+        void onBatchCommitted();
+    }
+
+    /**
+     * 数据过滤条件
+     *
+     * @param <T>
+     */
+    interface DataPredicate<T>
+    {
+        /**
+         * 数据是否满足条件
+         *
+         * @param data
+         * @return
+         */
+        boolean test(T data);
     }
 
     /**
@@ -185,4 +344,21 @@ public interface DataHolder<T>
          */
         T transform(T source);
     }
+
+    /**
+     * 整体转换一组数据的转换器，通过{@link #setDataTransform(DataTransform)}设置后，
+     * 添加或者设置一组数据的时候会调用{@link #transformList(List)}，单个数据的时候调用{@link #transform(Object)}
+     *
+     * @param <T>
+     */
+    interface BulkDataTransform<T> extends DataTransform<T>
+    {
+        /**
+         * 转换一组数据
+         *
+         * @param source 只读的原数据
+         * @return 和source数量相同并且顺序对应的结果，null元素表示该位置不进行转换
+         */
+        List<T> transformList(List<T> source);
+    }
 }
@@ -0,0 +1,478 @@
+package com.sd.lib.adapter.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 把{@link DataHolder}的数据保存到文件，下次启动的时候马上恢复，用来在网络和数据库返回之前显示上次的数据
+ * <p>
+ * 文件格式为：魔数、版本、数量、每个数据的偏移量，然后是每个数据序列化后的内容；
+ * {@link #load()}通过内存映射读取文件，只校验文件头和偏移量，数据在{@link List#get(int)}的时候才解码，
+ * 所以可以在UI线程调用，例如：
+ * <pre>
+ * holder.setData(store.load());
+ * store.attach(holder, executor);
+ * </pre>
+ * {@link ListDataHolder}使用{@link ListDataHolder.Storage#Array}的时候直接保存恢复的集合，只有显示出来的数据会被解码，
+ * 第一次修改的时候才会解码全部数据；
+ * {@link #attach(DataHolder, Executor)}之后，数据变化会在下次调度的时候取一次快照，然后在executor中写入文件，
+ * 应该在恢复数据之后再调用，避免把刚恢复的数据再写一次
+ *
+ * @param <T>
+ */
+public class DataSnapshotStore<T>
+{
+    private static final int MAGIC = 0x46534E50;
+    private static final int VERSION = 1;
+    /**
+     * 魔数、版本、数量
+     */
+    private static final int HEADER_SIZE = 12;
+
+    private final File mFile;
+    private final Serializer<T> mSerializer;
+
+    private DataHolder<T> mHolder;
+    private Executor mExecutor;
+    private Scheduler mScheduler;
+
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    /**
+     * 等待写入的快照，只保留最新的
+     */
+    private final AtomicReference<List<T>> mPendingSave = new AtomicReference<>();
+    private final Object mWriteLock = new Object();
+
+    private final Runnable mSnapshotTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mScheduled.set(false);
+
+            final DataHolder<T> holder = mHolder;
+            if (holder == null)
+                return;
+
+            final List<T> list = holder instanceof ListDataHolder
+                    ? ((ListDataHolder<T>) holder).snapshot()
+                    : new ArrayList<>(holder.getData());
+
+            if (mPendingSave.getAndSet(list) == null)
+                mExecutor.execute(mWriteTask);
+        }
+    };
+
+    private final Runnable mWriteTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            // 在锁内取快照，保证后取的快照后写入
+            synchronized (mWriteLock)
+            {
+                final List<T> list = mPendingSave.getAndSet(null);
+                if (list == null)
+                    return;
+
+                try
+                {
+                    save(list);
+                } catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        }
+    };
+
+    private final DataHolder.DataChangeCallback<T> mDataChangeCallback = new DataHolder.DataChangeCallback<T>()
+    {
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            scheduleSave();
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            scheduleSave();
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            scheduleSave();
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            scheduleSave();
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            scheduleSave();
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            scheduleSave();
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            scheduleSave();
+        }
+    };
+
+    /**
+     * @param file       保存数据的文件
+     * @param serializer 数据的序列化
+     */
+    public DataSnapshotStore(File file, Serializer<T> serializer)
+    {
+        if (file == null)
+            throw new NullPointerException("file is null");
+        if (serializer == null)
+            throw new NullPointerException("serializer is null");
+
+        mFile = file;
+        mSerializer = serializer;
+    }
+
+    /**
+     * 读取保存的数据，文件不存在或者无效的时候返回空集合
+     *
+     * @return 可以修改的集合，数据在读取的时候才解码
+     */
+    public List<T> load()
+    {
+        if (!mFile.isFile())
+            return new ArrayList<>();
+
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(mFile, "r");
+            final FileChannel channel = file.getChannel();
+            final long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE)
+                return new ArrayList<>();
+
+            // 关闭文件之后映射依然有效
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            final SnapshotList<T> list = SnapshotList.create(buffer, mSerializer);
+            return list != null ? list : new ArrayList<T>();
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return new ArrayList<>();
+        } finally
+        {
+            if (file != null)
+            {
+                try
+                {
+                    file.close();
+                } catch (IOException ignored)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * 马上把list写入文件，先写临时文件再重命名，写入过程中失败不会破坏之前的文件
+     *
+     * @param list
+     * @throws IOException
+     */
+    public void save(List<? extends T> list) throws IOException
+    {
+        final int count = list.size();
+        final int[] arrOffset = new int[count + 1];
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++)
+        {
+            final T item = list.get(i);
+            if (item != null)
+            {
+                // 空的内容保存为空的位置，读取的时候为null
+                final byte[] bytes = mSerializer.encode(item);
+                if (bytes != null)
+                    data.write(bytes, 0, bytes.length);
+            }
+            arrOffset[i + 1] = data.size();
+        }
+
+        final File parent = mFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("create dir failed:" + parent);
+
+        final File temp = new File(mFile.getPath() + ".tmp");
+        final FileOutputStream fileOut = new FileOutputStream(temp);
+        try
+        {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (int offset : arrOffset)
+            {
+                out.writeInt(offset);
+            }
+            data.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync();
+        } finally
+        {
+            fileOut.close();
+        }
+
+        if (!temp.renameTo(mFile))
+        {
+            mFile.delete();
+            if (!temp.renameTo(mFile))
+                throw new IOException("rename failed:" + temp + " -> " + mFile);
+        }
+    }
+
+    /**
+     * 删除保存的文件
+     *
+     * @return
+     */
+    public boolean delete()
+    {
+        synchronized (mWriteLock)
+        {
+            mPendingSave.set(null);
+            return mFile.delete();
+        }
+    }
+
+    /**
+     * 在主线程取快照
+     *
+     * @param holder
+     * @param executor 写入文件的线程池
+     */
+    public void attach(DataHolder<T> holder, Executor executor)
+    {
+        attach(holder, executor, MainThreadScheduler.getInstance());
+    }
+
+    /**
+     * 监听holder的数据变化，变化后保存数据，会取消之前的监听
+     *
+     * @param holder
+     * @param executor  写入文件的线程池
+     * @param scheduler 取快照的调度器，应该是修改holder的线程，多次变化只取一次快照
+     */
+    public void attach(DataHolder<T> holder, Executor executor, Scheduler scheduler)
+    {
+        if (holder == null)
+            throw new NullPointerException("holder is null");
+        if (executor == null)
+            throw new NullPointerException("executor is null");
+        if (scheduler == null)
+            throw new NullPointerException("scheduler is null");
+
+        detach();
+        mHolder = holder;
+        mExecutor = executor;
+        mScheduler = scheduler;
+        holder.addDataChangeCallback(mDataChangeCallback);
+    }
+
+    /**
+     * 取消监听，已经取得的快照还会写入
+     */
+    public void detach()
+    {
+        final DataHolder<T> holder = mHolder;
+        mHolder = null;
+        if (holder != null)
+            holder.removeDataChangeCallback(mDataChangeCallback);
+    }
+
+    private void scheduleSave()
+    {
+        if (mScheduled.compareAndSet(false, true))
+            mScheduler.schedule(mSnapshotTask);
+    }
+
+    /**
+     * 映射文件中的数据，修改之前按位置解码并缓存，第一次修改的时候解码全部数据并转为{@link ArrayList}
+     */
+    private static final class SnapshotList<T> extends AbstractList<T> implements RandomAccess
+    {
+        private final ByteBuffer mBuffer;
+        private final int mCount;
+        private final int mDataStart;
+        private final Serializer<T> mSerializer;
+
+        private Object[] mCache;
+        private ArrayList<T> mList;
+
+        private SnapshotList(ByteBuffer buffer, int count, Serializer<T> serializer)
+        {
+            mBuffer = buffer;
+            mCount = count;
+            mDataStart = HEADER_SIZE + (count + 1) * 4;
+            mSerializer = serializer;
+            mCache = new Object[count];
+        }
+
+        /**
+         * 校验文件头和偏移量
+         *
+         * @param buffer
+         * @param serializer
+         * @param <T>
+         * @return null-文件无效
+         */
+        static <T> SnapshotList<T> create(ByteBuffer buffer, Serializer<T> serializer)
+        {
+            final int length = buffer.limit();
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                return null;
+
+            final int count = buffer.getInt(8);
+            if (count < 0 || count > (length - HEADER_SIZE) / 4 - 1)
+                return null;
+
+            final int dataStart = HEADER_SIZE + (count + 1) * 4;
+            int last = 0;
+            for (int i = 0; i <= count; i++)
+            {
+                final int offset = buffer.getInt(HEADER_SIZE + i * 4);
+                if (offset < last)
+                    return null;
+                last = offset;
+            }
+            if (buffer.getInt(HEADER_SIZE) != 0 || last != length - dataStart)
+                return null;
+
+            return new SnapshotList<>(buffer, count, serializer);
+        }
+
+        @Override
+        public T get(int index)
+        {
+            if (mList != null)
+                return mList.get(index);
+
+            if (index < 0 || index >= mCount)
+                throw new IndexOutOfBoundsException("index:" + index + " size:" + mCount);
+
+            Object item = mCache[index];
+            if (item == null)
+            {
+                item = decode(index);
+                mCache[index] = item;
+            }
+            return (T) item;
+        }
+
+        private T decode(int index)
+        {
+            final int start = mBuffer.getInt(HEADER_SIZE + index * 4);
+            final int end = mBuffer.getInt(HEADER_SIZE + index * 4 + 4);
+            if (start == end)
+                return null;
+
+            // 使用副本读取，多个线程可以同时解码
+            final ByteBuffer buffer = mBuffer.duplicate();
+            buffer.limit(mDataStart + end);
+            buffer.position(mDataStart + start);
+            return mSerializer.decode(buffer.slice());
+        }
+
+        @Override
+        public int size()
+        {
+            return mList != null ? mList.size() : mCount;
+        }
+
+        @Override
+        public T set(int index, T element)
+        {
+            return mutable().set(index, element);
+        }
+
+        @Override
+        public void add(int index, T element)
+        {
+            mutable().add(index, element);
+            modCount++;
+        }
+
+        @Override
+        public T remove(int index)
+        {
+            final T item = mutable().remove(index);
+            modCount++;
+            return item;
+        }
+
+        private ArrayList<T> mutable()
+        {
+            if (mList == null)
+            {
+                final ArrayList<T> list = new ArrayList<>(mCount);
+                for (int i = 0; i < mCount; i++)
+                {
+                    list.add(get(i));
+                }
+                mList = list;
+                mCache = null;
+            }
+            return mList;
+        }
+    }
+
+    /**
+     * 数据的序列化
+     *
+     * @param <T>
+     */
+    public interface Serializer<T>
+    {
+        /**
+         * 编码数据，null不会调用这个方法
+         *
+         * @param data
+         * @return 返回null或者长度为0的内容，读取的时候会被当作null
+         */
+        byte[] encode(T data);
+
+        /**
+         * 解码数据，可能在多个线程同时调用
+         *
+         * @param buffer 只包含这个数据的内容
+         * @return
+         */
+        T decode(ByteBuffer buffer);
+    }
+}
@@ -0,0 +1,687 @@
+package com.sd.lib.adapter.data;
+
+import com.sd.lib.adapter.data.diff.DiffCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 对另一个{@link DataHolder}进行过滤的{@link DataHolder}，只包含满足条件的数据
+ * <p>
+ * 内部用有序的int数组保存过滤后每个位置对应的源数据位置，收到源数据的变化回调后增量更新，
+ * 只把过滤后实际插入、删除、变化的范围通知给回调
+ * <p>
+ * 修改操作会按位置映射后转发给源数据，在源数据批量修改还未提交的时候，位置映射是旧的，不应该通过过滤后的holder修改数据，
+ * 这时候设置的过滤条件也会在提交之后才生效
+ *
+ * @param <T>
+ */
+public class FilteredDataHolder<T> extends AbstractDataHolder<T>
+{
+    private static final int PENDING_NONE = 0;
+    private static final int PENDING_SET = 1;
+    private static final int PENDING_NARROW = 2;
+
+    private final DataHolder<T> mSource;
+    private DataPredicate<T> mPredicate;
+
+    /**
+     * 过滤后每个位置对应的源数据位置，递增
+     */
+    private int[] mMap = new int[16];
+    private final List<T> mItems = new ArrayList<>();
+    private final List<T> mDataView = Collections.unmodifiableList(mItems);
+
+    /**
+     * 源数据批量修改中设置的过滤条件，提交之后再重新过滤
+     */
+    private DataPredicate<T> mPendingPredicate;
+    private int mPendingFilter = PENDING_NONE;
+
+    private final SourceCallback mSourceCallback = new SourceCallback();
+
+    /**
+     * @param source    源数据
+     * @param predicate 过滤条件，null-不过滤
+     */
+    public FilteredDataHolder(DataHolder<T> source, DataPredicate<T> predicate)
+    {
+        if (source == null)
+            throw new NullPointerException("source is null");
+
+        mSource = source;
+        mPredicate = predicate;
+        rebuild();
+        source.addDataChangeCallback(mSourceCallback);
+    }
+
+    /**
+     * 返回源数据
+     *
+     * @return
+     */
+    public DataHolder<T> getSource()
+    {
+        return mSource;
+    }
+
+    /**
+     * 停止监听源数据的变化
+     */
+    public void release()
+    {
+        mSource.removeDataChangeCallback(mSourceCallback);
+    }
+
+    /**
+     * 设置过滤条件，重新检查所有源数据，只通知实际插入和删除的范围
+     *
+     * @param predicate null-不过滤
+     */
+    public void setPredicate(DataPredicate<T> predicate)
+    {
+        if (mSource.isInBatch())
+        {
+            // 源数据的变化还没有通知过来，现在读取源数据会和之后收到的变化重复
+            mPendingPredicate = predicate;
+            mPendingFilter = PENDING_SET;
+            return;
+        }
+
+        mPendingFilter = PENDING_NONE;
+        mPendingPredicate = null;
+        mPredicate = predicate;
+
+        final int size = mSource.size();
+        final int[] newMap = new int[Math.max(16, size)];
+        final List<T> listNew = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+        {
+            final T item = mSource.get(i);
+            if (test(item))
+            {
+                newMap[listNew.size()] = i;
+                listNew.add(item);
+            }
+        }
+        applyFilter(newMap, listNew);
+    }
+
+    /**
+     * 设置一个更严格的过滤条件，只重新检查当前满足条件的数据，
+     * 调用方需要保证不满足旧条件的数据也不满足新条件，例如搜索关键字变长
+     *
+     * @param predicate
+     */
+    public void narrowPredicate(DataPredicate<T> predicate)
+    {
+        if (predicate == null)
+            throw new NullPointerException("predicate is null");
+
+        if (mSource.isInBatch())
+        {
+            mPendingPredicate = predicate;
+            if (mPendingFilter == PENDING_NONE)
+                mPendingFilter = PENDING_NARROW;
+            return;
+        }
+
+        mPendingFilter = PENDING_NONE;
+        mPendingPredicate = null;
+        mPredicate = predicate;
+
+        final int size = mItems.size();
+        final int[] newMap = new int[Math.max(16, size)];
+        final List<T> listNew = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+        {
+            final T item = mItems.get(i);
+            if (predicate.test(item))
+            {
+                newMap[listNew.size()] = mMap[i];
+                listNew.add(item);
+            }
+        }
+        applyFilter(newMap, listNew);
+    }
+
+    /**
+     * 返回过滤后index位置对应的源数据位置
+     *
+     * @param index
+     * @return -1表示index不合法
+     */
+    public int getSourceIndex(int index)
+    {
+        return isIndexLegal(index) ? mMap[index] : -1;
+    }
+
+    private boolean test(T item)
+    {
+        return mPredicate == null || mPredicate.test(item);
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > mMap.length)
+            mMap = Arrays.copyOf(mMap, Math.max(capacity, mMap.length * 2));
+    }
+
+    /**
+     * 返回第一个源数据位置不小于sourceIndex的过滤后位置
+     *
+     * @param sourceIndex
+     * @return
+     */
+    private int lowerIndex(int sourceIndex)
+    {
+        int low = 0;
+        int high = mItems.size();
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (mMap[mid] < sourceIndex)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * 从index位置开始的映射加上delta
+     *
+     * @param index
+     * @param delta
+     */
+    private void shiftMap(int index, int delta)
+    {
+        for (int i = index; i < mItems.size(); i++)
+        {
+            mMap[i] += delta;
+        }
+    }
+
+    private void insertMap(int index, int sourceIndex, T item)
+    {
+        ensureCapacity(mItems.size() + 1);
+        System.arraycopy(mMap, index, mMap, index + 1, mItems.size() - index);
+        mMap[index] = sourceIndex;
+        mItems.add(index, item);
+    }
+
+    private T removeMap(int index)
+    {
+        System.arraycopy(mMap, index + 1, mMap, index, mItems.size() - index - 1);
+        return mItems.remove(index);
+    }
+
+    private void rebuild()
+    {
+        mItems.clear();
+        final int size = mSource.size();
+        ensureCapacity(size);
+        for (int i = 0; i < size; i++)
+        {
+            final T item = mSource.get(i);
+            if (test(item))
+            {
+                mMap[mItems.size()] = i;
+                mItems.add(item);
+            }
+        }
+    }
+
+    /**
+     * 使用新的映射，按顺序通知被删除和插入的范围
+     *
+     * @param newMap
+     * @param listNew
+     */
+    private void applyFilter(int[] newMap, List<T> listNew)
+    {
+        final int[] oldMap = mMap;
+        final List<T> listOld = new ArrayList<>(mItems);
+        final int oldSize = listOld.size();
+        final int newSize = listNew.size();
+
+        mMap = newMap;
+        mItems.clear();
+        mItems.addAll(listNew);
+
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldSize || j < newSize)
+        {
+            if (j >= newSize || (i < oldSize && oldMap[i] < newMap[j]))
+            {
+                final int start = i;
+                while (i < oldSize && (j >= newSize || oldMap[i] < newMap[j]))
+                {
+                    i++;
+                }
+
+                if (i - start == 1)
+                    getNotifier().onDataRemoved(position, listOld.get(start));
+                else
+                    getNotifier().onDataRangeRemoved(position, obtainPayload(listOld, start, i - start));
+            } else if (i >= oldSize || newMap[j] < oldMap[i])
+            {
+                final int start = j;
+                while (j < newSize && (i >= oldSize || newMap[j] < oldMap[i]))
+                {
+                    j++;
+                }
+
+                getNotifier().onDataAdded(position, obtainPayload(mItems, start, j - start));
+                position += j - start;
+            } else
+            {
+                i++;
+                j++;
+                position++;
+            }
+        }
+    }
+
+    private void onSourceAdded(int index, List<T> list)
+    {
+        final int count = list.size();
+        final int start = lowerIndex(index);
+        shiftMap(start, count);
+
+        int insert = start;
+        for (int i = 0; i < count; i++)
+        {
+            final T item = list.get(i);
+            if (test(item))
+                insertMap(insert++, index + i, item);
+        }
+
+        if (insert > start)
+            getNotifier().onDataAdded(start, obtainPayload(mItems, start, insert - start));
+    }
+
+    private void onSourceRemoved(int index, int count)
+    {
+        final int start = lowerIndex(index);
+        final int end = lowerIndex(index + count);
+        final int removeCount = end - start;
+
+        final List<T> listRemoved = obtainRemovedBuffer();
+        listRemoved.addAll(mItems.subList(start, end));
+        System.arraycopy(mMap, end, mMap, start, mItems.size() - end);
+        mItems.subList(start, end).clear();
+        shiftMap(start, -count);
+
+        if (removeCount == 1)
+            getNotifier().onDataRemoved(start, listRemoved.get(0));
+        else if (removeCount > 1)
+            getNotifier().onDataRangeRemoved(start, obtainPayload(listRemoved, 0, removeCount));
+
+        listRemoved.clear();
+    }
+
+    /**
+     * @param index
+     * @param list
+     * @param payload 数据仍然满足条件的时候带着payload通知变化
+     */
+    private void onSourceChanged(int index, List<T> list, Object payload)
+    {
+        // 逐个处理，通过批量修改合并成范围通知
+        beginBatch();
+        try
+        {
+            for (int i = 0; i < list.size(); i++)
+            {
+                final int sourceIndex = index + i;
+                final T item = list.get(i);
+                final int position = lowerIndex(sourceIndex);
+                final boolean exist = position < mItems.size() && mMap[position] == sourceIndex;
+
+                if (test(item))
+                {
+                    if (exist)
+                    {
+                        mItems.set(position, item);
+                        notifyDataChanged(position, item, payload);
+                    } else
+                    {
+                        insertMap(position, sourceIndex, item);
+                        getNotifier().onDataAdded(position, obtainPayload(mItems, position, 1));
+                    }
+                } else if (exist)
+                {
+                    getNotifier().onDataRemoved(position, removeMap(position));
+                }
+            }
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    private void onSourceMoved(int fromIndex, int toIndex)
+    {
+        final int fromPosition = lowerIndex(fromIndex);
+        final boolean exist = fromPosition < mItems.size() && mMap[fromPosition] == fromIndex;
+
+        T item = null;
+        if (exist)
+            item = removeMap(fromPosition);
+        shiftMap(lowerIndex(fromIndex), -1);
+        shiftMap(lowerIndex(toIndex), 1);
+
+        if (exist)
+        {
+            final int toPosition = lowerIndex(toIndex);
+            insertMap(toPosition, toIndex, item);
+            if (toPosition != fromPosition)
+                getNotifier().onDataMoved(fromPosition, toPosition, item);
+        }
+    }
+
+    /**
+     * 返回过滤后的index位置在源数据中插入的位置
+     *
+     * @param index
+     * @return
+     */
+    private int toSourceInsertIndex(int index)
+    {
+        if (index < mItems.size())
+            return mMap[index];
+
+        return mSource.size();
+    }
+
+    @Override
+    public void setDataTransform(DataTransform<T> transform)
+    {
+        mSource.setDataTransform(transform);
+    }
+
+    @Override
+    public void setDiffCallback(DiffCallback<T> callback)
+    {
+        mSource.setDiffCallback(callback);
+    }
+
+    //---------- modify start ----------
+
+    @Override
+    public void setData(List<? extends T> list)
+    {
+        mSource.setData(list);
+    }
+
+    @Override
+    public boolean addData(T data)
+    {
+        return mSource.addData(data);
+    }
+
+    @Override
+    public boolean addData(List<? extends T> list)
+    {
+        return mSource.addData(list);
+    }
+
+    @Override
+    public void addData(int index, T data)
+    {
+        if (index < 0 || index > size())
+            return;
+
+        mSource.addData(toSourceInsertIndex(index), data);
+    }
+
+    @Override
+    public boolean addData(int index, List<? extends T> list)
+    {
+        if (index < 0 || index > size())
+            return false;
+
+        return mSource.addData(toSourceInsertIndex(index), list);
+    }
+
+    @Override
+    public boolean removeData(T data)
+    {
+        final int index = indexOf(data);
+        return removeData(index) != null;
+    }
+
+    @Override
+    public T removeData(int index)
+    {
+        if (!isIndexLegal(index))
+            return null;
+
+        return mSource.removeData(mMap[index]);
+    }
+
+    @Override
+    public void updateData(int index, T data)
+    {
+        if (!isIndexLegal(index))
+            return;
+
+        mSource.updateData(mMap[index], data);
+    }
+
+    @Override
+    public List<T> removeData(int index, int count)
+    {
+        final int size = size();
+        if (index < 0 || index >= size || count <= 0)
+            return new ArrayList<>();
+
+        final int end = Math.min(size, index + count);
+        final int[] arrSourceIndex = Arrays.copyOfRange(mMap, index, end);
+        final List<T> listRemoved = new ArrayList<>(mItems.subList(index, end));
+
+        // 从后往前删除，前面的源数据位置不受影响
+        mSource.beginBatch();
+        try
+        {
+            for (int i = arrSourceIndex.length - 1; i >= 0; i--)
+            {
+                mSource.removeData(arrSourceIndex[i]);
+            }
+        } finally
+        {
+            mSource.commitBatch();
+        }
+        return listRemoved;
+    }
+
+    /**
+     * 删除过滤后满足条件的数据
+     *
+     * @param predicate
+     * @return
+     */
+    @Override
+    public int removeIf(final DataPredicate<T> predicate)
+    {
+        if (predicate == null)
+            return 0;
+
+        return mSource.removeIf(new DataPredicate<T>()
+        {
+            @Override
+            public boolean test(T data)
+            {
+                return FilteredDataHolder.this.test(data) && predicate.test(data);
+            }
+        });
+    }
+
+    @Override
+    public void updateData(int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return;
+
+        if (index < 0 || index + list.size() > size())
+            return;
+
+        final int[] arrSourceIndex = Arrays.copyOfRange(mMap, index, index + list.size());
+        mSource.beginBatch();
+        try
+        {
+            for (int i = 0; i < arrSourceIndex.length; i++)
+            {
+                mSource.updateData(arrSourceIndex[i], list.get(i));
+            }
+        } finally
+        {
+            mSource.commitBatch();
+        }
+    }
+
+    /**
+     * 转换过滤后的数据
+     *
+     * @param operator
+     */
+    @Override
+    public void replaceAll(final DataTransform<T> operator)
+    {
+        if (operator == null)
+            return;
+
+        mSource.replaceAll(new DataTransform<T>()
+        {
+            @Override
+            public T transform(T source)
+            {
+                return test(source) ? operator.transform(source) : null;
+            }
+        });
+    }
+
+    @Override
+    public boolean moveData(int fromIndex, int toIndex)
+    {
+        if (!isIndexLegal(fromIndex) || !isIndexLegal(toIndex))
+            return false;
+
+        return mSource.moveData(mMap[fromIndex], mMap[toIndex]);
+    }
+
+    //---------- modify end ----------
+
+    @Override
+    public T get(int index)
+    {
+        if (isIndexLegal(index))
+            return mItems.get(index);
+        else
+            return null;
+    }
+
+    @Override
+    public int size()
+    {
+        return mItems.size();
+    }
+
+    @Override
+    public int indexOf(T data)
+    {
+        return mItems.indexOf(data);
+    }
+
+    @Override
+    public List<T> getData()
+    {
+        return mDataView;
+    }
+
+    /**
+     * 源数据的回调，带payload的变化按过滤后的位置转发
+     */
+    private final class SourceCallback implements BatchCallback<T>, PayloadCallback<T>
+    {
+        @Override
+        public void onBatchCommitted()
+        {
+            final int pending = mPendingFilter;
+            if (pending == PENDING_NONE)
+                return;
+
+            final DataPredicate<T> predicate = mPendingPredicate;
+            mPendingFilter = PENDING_NONE;
+            mPendingPredicate = null;
+            if (pending == PENDING_NARROW)
+                narrowPredicate(predicate);
+            else
+                setPredicate(predicate);
+        }
+
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            mItems.clear();
+            ensureCapacity(list.size());
+            for (int i = 0; i < list.size(); i++)
+            {
+                final T item = list.get(i);
+                if (test(item))
+                {
+                    mMap[mItems.size()] = i;
+                    mItems.add(item);
+                }
+            }
+            getNotifier().onDataChanged(obtainPayload(mItems, 0, mItems.size()));
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            onSourceChanged(index, Collections.singletonList(data), null);
+        }
+
+        @Override
+        public void onDataChanged(int index, T data, Object payload)
+        {
+            onSourceChanged(index, Collections.singletonList(data), payload);
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            onSourceAdded(index, list);
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            onSourceRemoved(index, 1);
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            onSourceChanged(index, list, null);
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            onSourceRemoved(index, list.size());
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            onSourceMoved(fromIndex, toIndex);
+        }
+    }
+}
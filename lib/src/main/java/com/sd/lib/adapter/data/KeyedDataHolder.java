@@ -0,0 +1,269 @@
+package com.sd.lib.adapter.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按key索引数据的{@link DataHolder}，key需要唯一，并且相等的数据key也要相同
+ * <p>
+ * 内部维护key到节点的索引，节点按位置保存在平衡树中，插入、删除、移动的时候同步修改平衡树，
+ * 所以查找key的位置、在任意位置增删以及更新都是O(log n)，被删除的key会马上从索引中移除；
+ * 整体设置数据之后索引在下次查找的时候重建
+ *
+ * @param <K> key类型
+ * @param <T> 实体类型
+ */
+public class KeyedDataHolder<K, T> extends ListDataHolder<T>
+{
+    private final KeyExtractor<K, T> mKeyExtractor;
+    private final Map<K, PositionIndex.Node<K>> mMapNode = new HashMap<>();
+    private final PositionIndex<K> mPositionIndex = new PositionIndex<>();
+    /**
+     * 索引是否和数据一致，整体设置数据之后为false，下次查找的时候重建
+     */
+    private boolean mIndexValid;
+
+    public KeyedDataHolder(KeyExtractor<K, T> keyExtractor)
+    {
+        this(keyExtractor, Storage.Array);
+    }
+
+    /**
+     * @param keyExtractor
+     * @param storage      数据的存储方式
+     */
+    public KeyedDataHolder(KeyExtractor<K, T> keyExtractor, Storage storage)
+    {
+        super(storage);
+        if (keyExtractor == null)
+            throw new NullPointerException("keyExtractor is null");
+
+        mKeyExtractor = keyExtractor;
+        setModifyCallback(new DataChangeCallback<T>()
+        {
+            @Override
+            public void onDataChanged(List<T> list)
+            {
+                invalidateIndex();
+            }
+
+            @Override
+            public void onDataChanged(int index, T data)
+            {
+                if (mIndexValid)
+                    updateKey(mPositionIndex.get(index), data);
+            }
+
+            @Override
+            public void onDataAdded(int index, List<T> list)
+            {
+                if (mIndexValid)
+                    addKeys(index, list);
+            }
+
+            @Override
+            public void onDataRemoved(int index, T data)
+            {
+                if (mIndexValid)
+                    removeKeys(index, 1);
+            }
+
+            @Override
+            public void onDataRangeChanged(int index, List<T> list)
+            {
+                if (!mIndexValid)
+                    return;
+
+                for (int i = 0; i < list.size(); i++)
+                {
+                    updateKey(mPositionIndex.get(index + i), list.get(i));
+                }
+            }
+
+            @Override
+            public void onDataRangeRemoved(int index, List<T> list)
+            {
+                if (mIndexValid)
+                    removeKeys(index, list.size());
+            }
+
+            @Override
+            public void onDataMoved(int fromIndex, int toIndex, T data)
+            {
+                if (!mIndexValid)
+                    return;
+
+                final PositionIndex.Node<K> node = mPositionIndex.remove(fromIndex, 1);
+                mPositionIndex.insert(toIndex, node);
+            }
+        });
+    }
+
+    private void invalidateIndex()
+    {
+        mIndexValid = false;
+        mMapNode.clear();
+        mPositionIndex.clear();
+    }
+
+    /**
+     * 重建索引，O(n)
+     */
+    private void buildIndex()
+    {
+        mMapNode.clear();
+        mPositionIndex.clear();
+        mIndexValid = true;
+        addKeys(0, getData());
+    }
+
+    private void addKeys(int index, List<T> list)
+    {
+        final List<K> listKey = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++)
+        {
+            listKey.add(mKeyExtractor.getKey(list.get(i)));
+        }
+
+        final List<PositionIndex.Node<K>> listNode = mPositionIndex.insert(index, listKey);
+        for (PositionIndex.Node<K> node : listNode)
+        {
+            mMapNode.put(node.mKey, node);
+        }
+    }
+
+    private void removeKeys(int index, int count)
+    {
+        final List<PositionIndex.Node<K>> listNode = new ArrayList<>(count);
+        PositionIndex.collect(mPositionIndex.remove(index, count), listNode);
+        for (PositionIndex.Node<K> node : listNode)
+        {
+            removeKey(node);
+        }
+    }
+
+    private void removeKey(PositionIndex.Node<K> node)
+    {
+        // key重复的时候索引指向的可能是其他节点
+        if (mMapNode.get(node.mKey) == node)
+            mMapNode.remove(node.mKey);
+    }
+
+    private void updateKey(PositionIndex.Node<K> node, T data)
+    {
+        final K key = mKeyExtractor.getKey(data);
+        if (key == null ? node.mKey == null : key.equals(node.mKey))
+            return;
+
+        removeKey(node);
+        node.mKey = key;
+        mMapNode.put(key, node);
+    }
+
+    /**
+     * 返回key的提取器
+     *
+     * @return
+     */
+    public KeyExtractor<K, T> getKeyExtractor()
+    {
+        return mKeyExtractor;
+    }
+
+    /**
+     * 返回key对应数据的位置
+     *
+     * @param key
+     * @return -1表示不存在
+     */
+    public int indexOfKey(K key)
+    {
+        if (key == null)
+            return -1;
+
+        if (!mIndexValid)
+            buildIndex();
+
+        final PositionIndex.Node<K> node = mMapNode.get(key);
+        return node == null ? -1 : mPositionIndex.indexOf(node);
+    }
+
+    /**
+     * 返回key对应的数据
+     *
+     * @param key
+     * @return
+     */
+    public T getByKey(K key)
+    {
+        final int index = indexOfKey(key);
+        return index < 0 ? null : get(index);
+    }
+
+    /**
+     * 移除key对应的数据
+     *
+     * @param key
+     * @return 被移除的数据
+     */
+    public T removeByKey(K key)
+    {
+        final int index = indexOfKey(key);
+        return index < 0 ? null : removeData(index);
+    }
+
+    /**
+     * 如果已经存在相同key的数据则更新，否则添加到末尾
+     *
+     * @param data
+     * @return 数据的位置
+     */
+    public int upsert(T data)
+    {
+        if (data == null)
+            return -1;
+
+        final int index = indexOfKey(mKeyExtractor.getKey(data));
+        if (index >= 0)
+        {
+            updateData(index, data);
+            return index;
+        } else
+        {
+            addData(data);
+            return size() - 1;
+        }
+    }
+
+    @Override
+    public int indexOf(T data)
+    {
+        if (data == null)
+            return -1;
+
+        final int index = indexOfKey(mKeyExtractor.getKey(data));
+        if (index < 0)
+            return -1;
+
+        return data.equals(get(index)) ? index : -1;
+    }
+
+    /**
+     * 获取数据的key
+     *
+     * @param <K>
+     * @param <T>
+     */
+    public interface KeyExtractor<K, T>
+    {
+        /**
+         * 返回数据的key
+         *
+         * @param data
+         * @return
+         */
+        K getKey(T data);
+    }
+}
@@ -1,39 +1,157 @@
 package com.sd.lib.adapter.data;
 
+import com.sd.lib.adapter.data.diff.DataDiff;
+import com.sd.lib.adapter.data.diff.DiffCallback;
+import com.sd.lib.adapter.data.diff.DiffResult;
+
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Executor;
 
-public class ListDataHolder<T> implements DataHolder<T>
+public class ListDataHolder<T> extends AbstractDataHolder<T>
 {
-    private List<T> mListData = new ArrayList<>();
-    private final List<DataChangeCallback<T>> mListDataChangeCallback = new ArrayList<>();
-    private DataTransform<T> mDataTransform;
+    /**
+     * 默认数据量达到多少的时候在子线程比较数据集
+     */
+    public static final int DEFAULT_ASYNC_DIFF_THRESHOLD = 1000;
+
+    private final Storage mStorage;
+    private List<T> mListData;
+    private Executor mDiffExecutor;
+    private Executor mMainExecutor;
+    private int mAsyncDiffThreshold = DEFAULT_ASYNC_DIFF_THRESHOLD;
+    private DiffTask mDiffTask;
+
+    private boolean mLazyTransform;
+    /**
+     * 延迟转换的结果，按原数据的引用保存
+     */
+    private final Map<T, T> mTransformCache = new IdentityHashMap<>();
+    private final List<T> mOutputView = new OutputView();
+
+    public ListDataHolder()
+    {
+        this(Storage.Array);
+    }
 
-    @Override
-    public void addDataChangeCallback(DataChangeCallback<T> callback)
+    /**
+     * @param storage 数据的存储方式
+     */
+    public ListDataHolder(Storage storage)
+    {
+        mStorage = storage == null ? Storage.Array : storage;
+        mListData = createStorage(Collections.<T>emptyList());
+    }
+
+    /**
+     * 设置比较数据集的线程，数据量达到阈值的时候，{@link #setData(List)}会在backgroundExecutor中比较数据集，
+     * 比较完成后在mainExecutor中更新数据并通知回调，在此之前读取或者修改数据会直接使用新的数据集并通知整体变化，
+     * 保证读取到的数据和修改的位置一致
+     *
+     * @param backgroundExecutor 比较数据集的线程，null-在调用线程比较
+     * @param mainExecutor       更新数据的线程，一般为主线程
+     */
+    public void setDiffExecutor(Executor backgroundExecutor, Executor mainExecutor)
+    {
+        mDiffExecutor = backgroundExecutor;
+        mMainExecutor = mainExecutor;
+    }
+
+    /**
+     * 设置数据量达到多少的时候在子线程比较数据集，默认{@link #DEFAULT_ASYNC_DIFF_THRESHOLD}
+     *
+     * @param threshold
+     */
+    public void setAsyncDiffThreshold(int threshold)
+    {
+        mAsyncDiffThreshold = threshold;
+    }
+
+    /**
+     * 设置是否延迟转换，延迟转换的时候数据集保存的是原数据，{@link #get(int)}第一次访问某个数据的时候才转换，
+     * 转换结果按原数据的引用缓存，{@link #setData(List)}之后没有变化的原数据不需要重新转换
+     * <p>
+     * 延迟转换的时候{@link DiffCallback}比较的是原数据
+     *
+     * @param lazy
+     */
+    public void setLazyTransform(boolean lazy)
     {
-        if (callback == null || mListDataChangeCallback.contains(callback))
+        flushDiffTask();
+
+        if (mLazyTransform == lazy)
             return;
 
-        mListDataChangeCallback.add(callback);
+        if (getDataTransform() != null)
+        {
+            for (int i = 0; i < mListData.size(); i++)
+            {
+                final T item = mListData.get(i);
+                if (lazy)
+                {
+                    // 已有的数据已经转换过了，把它们作为自己的转换结果
+                    mTransformCache.put(item, item);
+                } else
+                {
+                    mListData.set(i, lazyTransform(item));
+                }
+            }
+        }
+        if (!lazy)
+            mTransformCache.clear();
+        mLazyTransform = lazy;
     }
 
     @Override
-    public void removeDataChangeCallback(DataChangeCallback<T> callback)
+    public void setDataTransform(DataTransform<T> transform)
     {
-        mListDataChangeCallback.remove(callback);
+        super.setDataTransform(transform);
+        mTransformCache.clear();
     }
 
-    @Override
-    public void setDataTransform(DataTransform<T> dataTransform)
+    /**
+     * 返回保存数据的集合，会先应用还未完成的比较，子类直接修改集合后需要自己通知数据变化，
+     * 延迟转换的时候集合中保存的是原数据
+     *
+     * @return
+     */
+    protected final List<T> getStorage()
     {
-        mDataTransform = dataTransform;
+        flushDiffTask();
+        return mListData;
     }
 
-    private ListIterator<DataChangeCallback<T>> getListIteratorPrevious()
+    /**
+     * 返回当前数据的只读快照，之后的修改不会影响快照，快照可以在任意线程读取
+     * <p>
+     * {@link Storage#Tree}并且没有延迟转换的时候是O(1)的，快照和数据集共享节点，
+     * 把快照传给{@link #setData(List)}可以用来撤销和重做，只会比较和通知发生变化的部分，其他情况会复制一份数据
+     * <p>
+     * 快照传回{@link #setData(List)}的时候直接使用快照保存的数据，不会再次转换，转换器变化之后按普通的数据处理
+     *
+     * @return
+     */
+    public List<T> snapshot()
     {
-        return mListDataChangeCallback.listIterator(mListDataChangeCallback.size());
+        flushDiffTask();
+        if (!isLazy())
+        {
+            final List<T> data = mListData instanceof TreeList
+                    ? ((TreeList<T>) mListData).snapshot()
+                    : Collections.unmodifiableList(new ArrayList<>(mListData));
+            return new Snapshot<>(this, getDataTransform(), data, null);
+        }
+
+        final List<T> source = mListData instanceof TreeList
+                ? ((TreeList<T>) mListData).snapshot()
+                : Collections.unmodifiableList(new ArrayList<>(mListData));
+        final List<T> data = Collections.unmodifiableList(new ArrayList<>(getOutputList()));
+        return new Snapshot<>(this, getDataTransform(), data, source);
     }
 
     //---------- modify start ----------
@@ -41,41 +159,190 @@ public class ListDataHolder<T> implements DataHolder<T>
     @Override
     public void setData(List<? extends T> list)
     {
-        if (list != null)
+        // 新的数据集覆盖还未完成的比较
+        mDiffTask = null;
+
+        final List<T> listNew = prepareList(list);
+        if (mStorage == Storage.Tree && TreeList.isShareable(listNew) && setSharedData(listNew))
+            return;
+
+        if (getDiffCallback() != null && !mListData.isEmpty() && !listNew.isEmpty())
         {
-            mListData = transformData(list);
-        } else
+            final int maxSize = Math.max(mListData.size(), listNew.size());
+            if (mDiffExecutor != null && mMainExecutor != null && maxSize >= mAsyncDiffThreshold)
+            {
+                final DiffTask task = new DiffTask(mListData, new ArrayList<>(listNew), getDiffCallback(), mMainExecutor);
+                mDiffTask = task;
+                mDiffExecutor.execute(task);
+            } else
+            {
+                final DiffResult<T> result = DataDiff.calculate(mListData, listNew, getDiffCallback());
+                applyDiffResult(result, listNew, 0);
+            }
+            return;
+        }
+
+        mListData = toStorage(listNew);
+        trimTransformCache();
+
+        getNotifier().onDataChanged(obtainPayload(getOutputList(), 0, mListData.size()));
+    }
+
+    /**
+     * 新的数据集和当前数据集共享节点的时候，跳过开头和末尾共享的部分，只比较和通知中间发生变化的部分
+     *
+     * @param listNew
+     * @return false-中间部分需要在子线程比较，按普通的数据集处理
+     */
+    private boolean setSharedData(List<T> listNew)
+    {
+        final List<T> listOld = mListData;
+        final int prefix = TreeList.commonPrefix(listOld, listNew);
+        final int suffix = TreeList.commonSuffix(listOld, listNew, Math.min(listOld.size(), listNew.size()) - prefix);
+        final int oldEnd = listOld.size() - suffix;
+        final int newEnd = listNew.size() - suffix;
+
+        if (getDiffCallback() != null && oldEnd > prefix && newEnd > prefix)
         {
-            mListData = new ArrayList<>();
+            final int maxSize = Math.max(oldEnd, newEnd) - prefix;
+            if (mDiffExecutor != null && mMainExecutor != null && maxSize >= mAsyncDiffThreshold)
+                return false;
+
+            final DiffResult<T> result = DataDiff.calculate(listOld.subList(prefix, oldEnd), listNew.subList(prefix, newEnd), getDiffCallback());
+            applyDiffResult(result, listNew, prefix);
+            return true;
         }
 
-        final List<T> listCopy = new ArrayList<>(mListData);
-        final ListIterator<DataChangeCallback<T>> it = getListIteratorPrevious();
-        while (it.hasPrevious())
+        mListData = toStorage(listNew);
+        trimTransformCache();
+
+        // 没有比较器的时候，中间重叠的部分通知变化，多出的部分通知添加或者删除
+        final int common = Math.min(oldEnd, newEnd) - prefix;
+        if (common == 1)
+            getNotifier().onDataChanged(prefix, output(mListData.get(prefix)));
+        else if (common > 1)
+            getNotifier().onDataRangeChanged(prefix, obtainPayload(getOutputList(), prefix, common));
+
+        final int start = prefix + common;
+        if (newEnd > start)
+        {
+            getNotifier().onDataAdded(start, obtainPayload(getOutputList(), start, newEnd - start));
+        } else if (oldEnd > start)
         {
-            it.previous().onDataChanged(listCopy);
+            final List<T> listRemoved = outputAll(new ArrayList<>(listOld.subList(start, oldEnd)));
+            if (listRemoved.size() == 1)
+                getNotifier().onDataRemoved(start, listRemoved.get(0));
+            else
+                getNotifier().onDataRangeRemoved(start, listRemoved);
         }
+        return true;
+    }
+
+    /**
+     * 按比较结果逐步修改数据集并通知回调，结束后数据集为新的数据集
+     *
+     * @param result
+     * @param listNew
+     * @param offset  比较结果的位置相对于数据集的偏移量
+     */
+    private void applyDiffResult(DiffResult<T> result, List<T> listNew, final int offset)
+    {
+        final List<T> listWork = createStorage(mListData);
+        mListData = listWork;
+
+        result.dispatchUpdatesTo(new DiffResult.UpdateCallback<T>()
+        {
+            @Override
+            public void onInserted(int index, List<T> list)
+            {
+                index += offset;
+                listWork.addAll(index, list);
+
+                getNotifier().onDataAdded(index, obtainPayload(getOutputList(), index, list.size()));
+            }
+
+            @Override
+            public void onRemoved(int index, int count)
+            {
+                index += offset;
+                if (count == 1)
+                {
+                    final T data = output(listWork.remove(index));
+                    getNotifier().onDataRemoved(index, data);
+                } else
+                {
+                    final List<T> subList = listWork.subList(index, index + count);
+                    final List<T> listRemoved = new ArrayList<>(subList);
+                    subList.clear();
+
+                    getNotifier().onDataRangeRemoved(index, outputAll(listRemoved));
+                }
+            }
+
+            @Override
+            public void onChanged(int index, List<T> list)
+            {
+                index += offset;
+                for (int i = 0; i < list.size(); i++)
+                {
+                    listWork.set(index + i, list.get(i));
+                }
+
+                if (list.size() == 1)
+                    getNotifier().onDataChanged(index, output(list.get(0)));
+                else
+                    getNotifier().onDataRangeChanged(index, obtainPayload(getOutputList(), index, list.size()));
+            }
+
+            @Override
+            public void onMoved(int fromIndex, int toIndex)
+            {
+                fromIndex += offset;
+                toIndex += offset;
+                final T data = listWork.remove(fromIndex);
+                listWork.add(toIndex, data);
+
+                getNotifier().onDataMoved(fromIndex, toIndex, output(data));
+            }
+        });
+
+        if (mStorage == Storage.Tree)
+            mListData = TreeList.isShareable(listNew) ? toStorage(listNew) : listWork;
+        else
+            mListData = listNew;
+        trimTransformCache();
+    }
+
+    /**
+     * 如果有未完成的比较，直接使用比较中的新数据集，保证后续的修改基于新数据集
+     */
+    private void flushDiffTask()
+    {
+        final DiffTask task = mDiffTask;
+        if (task == null)
+            return;
+
+        mDiffTask = null;
+        mListData = createStorage(task.mNewList);
+        trimTransformCache();
+
+        getNotifier().onDataChanged(obtainPayload(getOutputList(), 0, mListData.size()));
     }
 
     @Override
     public boolean addData(T data)
     {
+        flushDiffTask();
+
         if (data == null)
             return false;
 
-        data = transformData(data);
+        data = prepareData(data);
 
         final int index = size();
         final boolean result = mListData.add(data);
 
-        final List<T> listCopy = new ArrayList<>(1);
-        listCopy.add(data);
-
-        final ListIterator<DataChangeCallback<T>> it = getListIteratorPrevious();
-        while (it.hasPrevious())
-        {
-            it.previous().onDataAdded(index, listCopy);
-        }
+        getNotifier().onDataAdded(index, obtainPayload(getOutputList(), index, 1));
 
         return result;
     }
@@ -83,20 +350,17 @@ public class ListDataHolder<T> implements DataHolder<T>
     @Override
     public boolean addData(List<? extends T> list)
     {
+        flushDiffTask();
+
         if (list == null || list.isEmpty())
             return false;
 
-        list = transformData(list);
-
         final int index = size();
+        final int count = list.size();
         final boolean result = mListData.addAll(list);
+        transformRange(index, count);
 
-        final List<T> listCopy = new ArrayList<>(list);
-        final ListIterator<DataChangeCallback<T>> it = getListIteratorPrevious();
-        while (it.hasPrevious())
-        {
-            it.previous().onDataAdded(index, listCopy);
-        }
+        getNotifier().onDataAdded(index, obtainPayload(getOutputList(), index, count));
 
         return result;
     }
@@ -104,37 +368,30 @@ public class ListDataHolder<T> implements DataHolder<T>
     @Override
     public void addData(int index, T data)
     {
+        flushDiffTask();
+
         if (data == null)
             return;
 
-        data = transformData(data);
+        data = prepareData(data);
         mListData.add(index, data);
 
-        final List<T> list = new ArrayList<>(1);
-        list.add(data);
-
-        final ListIterator<DataChangeCallback<T>> it = getListIteratorPrevious();
-        while (it.hasPrevious())
-        {
-            it.previous().onDataAdded(index, list);
-        }
+        getNotifier().onDataAdded(index, obtainPayload(getOutputList(), index, 1));
     }
 
     @Override
     public boolean addData(int index, List<? extends T> list)
     {
+        flushDiffTask();
+
         if (list == null || list.isEmpty())
             return false;
 
-        list = transformData(list);
+        final int count = list.size();
         final boolean result = mListData.addAll(index, list);
+        transformRange(index, count);
 
-        final List<T> listCopy = new ArrayList<>(list);
-        final ListIterator<DataChangeCallback<T>> it = getListIteratorPrevious();
-        while (it.hasPrevious())
-        {
-            it.previous().onDataAdded(index, listCopy);
-        }
+        getNotifier().onDataAdded(index, obtainPayload(getOutputList(), index, count));
 
         return result;
     }
@@ -142,55 +399,228 @@ public class ListDataHolder<T> implements DataHolder<T>
     @Override
     public boolean removeData(T data)
     {
-        final int position = mListData.indexOf(data);
+        flushDiffTask();
+
+        final int position = indexOf(data);
         return removeData(position) != null;
     }
 
     @Override
     public T removeData(int index)
     {
+        flushDiffTask();
+
         if (!isIndexLegal(index))
             return null;
 
-        final T model = mListData.remove(index);
+        final T model = output(mListData.remove(index));
 
-        final ListIterator<DataChangeCallback<T>> it = getListIteratorPrevious();
-        while (it.hasPrevious())
-        {
-            it.previous().onDataRemoved(index, model);
-        }
+        getNotifier().onDataRemoved(index, model);
         return model;
     }
 
     @Override
     public void updateData(int index, T data)
     {
+        flushDiffTask();
+
         if (data == null || !isIndexLegal(index))
             return;
 
-        data = transformData(data);
+        data = prepareData(data);
         mListData.set(index, data);
 
-        final ListIterator<DataChangeCallback<T>> it = getListIteratorPrevious();
-        while (it.hasPrevious())
+        getNotifier().onDataChanged(index, output(data));
+    }
+
+    @Override
+    public List<T> removeData(int index, int count)
+    {
+        flushDiffTask();
+
+        final int size = size();
+        if (index < 0 || index >= size || count <= 0)
+            return new ArrayList<>();
+
+        final int end = Math.min(size, index + count);
+        final List<T> subList = mListData.subList(index, end);
+        final List<T> listRemoved = new ArrayList<>(subList);
+        subList.clear();
+        outputAll(listRemoved);
+
+        if (listRemoved.size() == 1)
+            getNotifier().onDataRemoved(index, listRemoved.get(0));
+        else
+            getNotifier().onDataRangeRemoved(index, listRemoved);
+
+        return listRemoved;
+    }
+
+    @Override
+    public int removeIf(DataPredicate<T> predicate)
+    {
+        flushDiffTask();
+
+        if (predicate == null || mListData.isEmpty())
+            return 0;
+
+        final int size = mListData.size();
+        final boolean[] arrRemove = new boolean[size];
+        int removeCount = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (predicate.test(output(mListData.get(i))))
+            {
+                arrRemove[i] = true;
+                removeCount++;
+            }
+        }
+
+        if (removeCount == 0)
+            return 0;
+
+        // 一次遍历把保留的数据往前移动，被删除的数据按顺序保存下来
+        final List<T> listRemoved = obtainRemovedBuffer();
+        int write = 0;
+        for (int i = 0; i < size; i++)
+        {
+            final T item = mListData.get(i);
+            if (arrRemove[i])
+            {
+                listRemoved.add(output(item));
+            } else
+            {
+                if (write != i)
+                    mListData.set(write, item);
+                write++;
+            }
+        }
+        mListData.subList(write, size).clear();
+
+        // 从后往前按连续的区间通知，保证每次通知的位置都有效
+        int removedEnd = listRemoved.size();
+        int end = size;
+        while (end > 0)
         {
-            it.previous().onDataChanged(index, data);
+            if (!arrRemove[end - 1])
+            {
+                end--;
+                continue;
+            }
+
+            int start = end - 1;
+            while (start > 0 && arrRemove[start - 1])
+            {
+                start--;
+            }
+
+            final int count = end - start;
+            if (count == 1)
+                getNotifier().onDataRemoved(start, listRemoved.get(removedEnd - 1));
+            else
+                getNotifier().onDataRangeRemoved(start, obtainPayload(listRemoved, removedEnd - count, count));
+
+            removedEnd -= count;
+            end = start;
         }
+
+        listRemoved.clear();
+        return removeCount;
     }
 
-    //---------- modify end ----------
+    @Override
+    public void updateData(int index, List<? extends T> list)
+    {
+        flushDiffTask();
+
+        if (list == null || list.isEmpty())
+            return;
+
+        if (index < 0 || index + list.size() > size())
+            return;
+
+        final int count = list.size();
+        final List<T> listTransform = prepareData(list);
+        for (int i = 0; i < count; i++)
+        {
+            mListData.set(index + i, listTransform.get(i));
+        }
+
+        if (count == 1)
+            getNotifier().onDataChanged(index, get(index));
+        else
+            getNotifier().onDataRangeChanged(index, obtainPayload(getOutputList(), index, count));
+    }
 
     @Override
-    public boolean isIndexLegal(int index)
+    public void replaceAll(DataTransform<T> operator)
     {
-        return index >= 0 && index < size();
+        flushDiffTask();
+
+        if (operator == null)
+            return;
+
+        final int size = mListData.size();
+        int start = -1;
+        for (int i = 0; i <= size; i++)
+        {
+            boolean changed = false;
+            if (i < size)
+            {
+                final T item = output(mListData.get(i));
+                final T result = operator.transform(item);
+                if (result != null && result != item)
+                {
+                    mListData.set(i, prepareData(result));
+                    changed = true;
+                }
+            }
+
+            if (changed)
+            {
+                if (start < 0)
+                    start = i;
+            } else if (start >= 0)
+            {
+                // 连续变化的区间结束
+                if (i - start == 1)
+                    getNotifier().onDataChanged(start, get(start));
+                else
+                    getNotifier().onDataRangeChanged(start, obtainPayload(getOutputList(), start, i - start));
+                start = -1;
+            }
+        }
+    }
+
+    @Override
+    public boolean moveData(int fromIndex, int toIndex)
+    {
+        flushDiffTask();
+
+        if (!isIndexLegal(fromIndex) || !isIndexLegal(toIndex))
+            return false;
+
+        if (fromIndex == toIndex)
+            return true;
+
+        final T data = output(mListData.get(fromIndex));
+        if (fromIndex < toIndex)
+            Collections.rotate(mListData.subList(fromIndex, toIndex + 1), -1);
+        else
+            Collections.rotate(mListData.subList(toIndex, fromIndex + 1), 1);
+
+        getNotifier().onDataMoved(fromIndex, toIndex, data);
+        return true;
     }
 
+    //---------- modify end ----------
+
     @Override
     public T get(int index)
     {
+        flushDiffTask();
         if (isIndexLegal(index))
-            return mListData.get(index);
+            return output(mListData.get(index));
         else
             return null;
     }
@@ -198,47 +628,309 @@ public class ListDataHolder<T> implements DataHolder<T>
     @Override
     public int size()
     {
+        flushDiffTask();
         return mListData.size();
     }
 
     @Override
     public int indexOf(T data)
     {
-        return mListData.indexOf(data);
+        flushDiffTask();
+        if (!isLazy())
+            return mListData.indexOf(data);
+
+        if (data == null)
+            return -1;
+
+        // 还未转换的数据和原数据比较，不触发转换
+        for (int i = 0; i < mListData.size(); i++)
+        {
+            final T item = mListData.get(i);
+            final T transform = mTransformCache.get(item);
+            if (data.equals(transform != null ? transform : item))
+                return i;
+        }
+        return -1;
     }
 
+    /**
+     * 延迟转换的时候返回只读视图，访问视图中的数据会触发转换
+     *
+     * @return
+     */
     @Override
     public List<T> getData()
     {
-        return mListData;
+        flushDiffTask();
+        return getOutputList();
+    }
+
+    private List<T> createStorage(List<? extends T> list)
+    {
+        if (mStorage == Storage.Tree)
+            return new TreeList<>(list);
+        else
+            return new ArrayList<>(list);
+    }
+
+    /**
+     * 返回用来保存list的集合，{@link Storage#Array}直接使用list，list必须是{@link #prepareList(List)}返回的
+     *
+     * @param list
+     * @return
+     */
+    private List<T> toStorage(List<T> list)
+    {
+        if (mStorage == Storage.Tree && !(list instanceof TreeList))
+            return new TreeList<>(list);
+        else
+            return list;
+    }
+
+    /**
+     * 把{@link #setData(List)}传入的list处理为要保存的数据，{@link Storage#Array}的时候保证返回的是自己创建的集合
+     *
+     * @param list
+     * @return
+     */
+    private List<T> prepareList(List<? extends T> list)
+    {
+        if (list == null)
+            return new ArrayList<>();
+
+        if (list instanceof Snapshot)
+        {
+            final Snapshot<T> snapshot = (Snapshot<T>) list;
+            if (snapshot.mOwner == this && snapshot.mTransform == getDataTransform())
+            {
+                // 快照中的数据已经转换过了
+                List<T> listNew = snapshot.mData;
+                if (isLazy())
+                {
+                    if (snapshot.mSource != null)
+                        listNew = snapshot.mSource;
+                    for (int i = 0; i < listNew.size(); i++)
+                    {
+                        mTransformCache.put(listNew.get(i), snapshot.mData.get(i));
+                    }
+                }
+                return mStorage == Storage.Array ? new ArrayList<>(listNew) : listNew;
+            }
+            list = snapshot.mData;
+        }
+
+        final List<T> listNew = prepareData(list);
+        if (mStorage == Storage.Array && listNew == list)
+            return new ArrayList<>(listNew);
+        return listNew;
+    }
+
+    /**
+     * 转换数据集中[index, index + count)范围的数据
+     *
+     * @param index
+     * @param count
+     */
+    private void transformRange(int index, int count)
+    {
+        if (getDataTransform() == null || isLazy())
+            return;
+
+        final List<T> listTransform = transformData(mListData.subList(index, index + count));
+        for (int i = 0; i < count; i++)
+        {
+            mListData.set(index + i, listTransform.get(i));
+        }
+    }
+
+    private boolean isLazy()
+    {
+        return mLazyTransform && getDataTransform() != null;
     }
 
-    private List<T> transformData(List<? extends T> data)
+    /**
+     * 保存到数据集之前的处理，延迟转换的时候直接保存原数据
+     *
+     * @param data
+     * @return
+     */
+    private T prepareData(T data)
     {
-        if (mDataTransform == null)
-            return (List<T>) data;
+        return isLazy() ? data : transformData(data);
+    }
 
-        if (data == null || data.isEmpty())
-            return (List<T>) data;
+    private List<T> prepareData(List<? extends T> list)
+    {
+        return isLazy() ? (List<T>) list : transformData(list);
+    }
 
-        final List<T> listResult = new ArrayList<>(data.size());
-        for (T item : data)
+    /**
+     * 返回数据集中保存的数据对外的值，延迟转换的时候返回转换结果
+     *
+     * @param data
+     * @return
+     */
+    private T output(T data)
+    {
+        return isLazy() ? lazyTransform(data) : data;
+    }
+
+    private List<T> outputAll(List<T> list)
+    {
+        if (isLazy())
         {
-            final T transform = transformData(item);
-            listResult.add(transform);
+            for (int i = 0; i < list.size(); i++)
+            {
+                list.set(i, lazyTransform(list.get(i)));
+            }
         }
-        return listResult;
+        return list;
     }
 
-    private T transformData(T data)
+    private List<T> getOutputList()
     {
-        if (mDataTransform == null)
-            return data;
+        return isLazy() ? mOutputView : mListData;
+    }
+
+    private T lazyTransform(T source)
+    {
+        if (source == null)
+            return null;
 
-        final T transform = mDataTransform.transform(data);
+        T transform = mTransformCache.get(source);
         if (transform == null)
-            return data;
+        {
+            if (mTransformCache.size() >= mListData.size() * 2 + 16)
+                trimTransformCache();
 
+            transform = transformData(source);
+            mTransformCache.put(source, transform);
+        }
         return transform;
     }
+
+    /**
+     * 移除缓存中已经不在数据集中的原数据
+     */
+    private void trimTransformCache()
+    {
+        if (mTransformCache.isEmpty())
+            return;
+
+        final Map<T, T> retain = new IdentityHashMap<>();
+        for (int i = 0; i < mListData.size(); i++)
+        {
+            final T item = mListData.get(i);
+            final T transform = mTransformCache.get(item);
+            if (transform != null)
+                retain.put(item, transform);
+        }
+        mTransformCache.clear();
+        mTransformCache.putAll(retain);
+    }
+
+    /**
+     * 延迟转换时对外的数据集只读视图
+     */
+    private final class OutputView extends AbstractList<T> implements RandomAccess
+    {
+        @Override
+        public T get(int index)
+        {
+            return output(mListData.get(index));
+        }
+
+        @Override
+        public int size()
+        {
+            return mListData.size();
+        }
+    }
+
+    /**
+     * {@link #snapshot()}返回的快照，保存了转换器和数据集中的原数据，传回{@link #setData(List)}的时候不需要再次转换
+     */
+    private static final class Snapshot<T> extends AbstractList<T> implements RandomAccess
+    {
+        private final ListDataHolder<T> mOwner;
+        private final DataTransform<T> mTransform;
+        /**
+         * 对外的数据
+         */
+        private final List<T> mData;
+        /**
+         * 延迟转换时数据集中保存的原数据，否则为null
+         */
+        private final List<T> mSource;
+
+        public Snapshot(ListDataHolder<T> owner, DataTransform<T> transform, List<T> data, List<T> source)
+        {
+            mOwner = owner;
+            mTransform = transform;
+            mData = data;
+            mSource = source;
+        }
+
+        @Override
+        public T get(int index)
+        {
+            return mData.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return mData.size();
+        }
+    }
+
+    private final class DiffTask implements Runnable
+    {
+        private final List<T> mOldList;
+        private final List<T> mNewList;
+        private final DiffCallback<T> mCallback;
+        private final Executor mResultExecutor;
+
+        public DiffTask(List<T> oldList, List<T> newList, DiffCallback<T> callback, Executor resultExecutor)
+        {
+            mOldList = oldList;
+            mNewList = newList;
+            mCallback = callback;
+            mResultExecutor = resultExecutor;
+        }
+
+        @Override
+        public void run()
+        {
+            final DiffResult<T> result = DataDiff.calculate(mOldList, mNewList, mCallback);
+            mResultExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (mDiffTask != DiffTask.this)
+                        return;
+
+                    mDiffTask = null;
+                    applyDiffResult(result, mNewList, 0);
+                }
+            });
+        }
+    }
+
+    /**
+     * 数据的存储方式
+     */
+    public enum Storage
+    {
+        /**
+         * 使用{@link ArrayList}存储，按位置查找快，在中间插入和删除需要移动后面的数据
+         */
+        Array,
+        /**
+         * 使用{@link TreeList}存储，在任意位置插入、删除和查找都是O(log n)，适合数据量大并且经常在中间插入删除的场景，
+         * {@link #snapshot()}是O(1)的
+         */
+        Tree
+    }
 }
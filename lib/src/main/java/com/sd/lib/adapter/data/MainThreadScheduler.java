@@ -0,0 +1,31 @@
+package com.sd.lib.adapter.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * 在主线程执行任务的调度器
+ */
+public final class MainThreadScheduler implements Scheduler
+{
+    private static MainThreadScheduler sInstance;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private MainThreadScheduler()
+    {
+    }
+
+    public static synchronized MainThreadScheduler getInstance()
+    {
+        if (sInstance == null)
+            sInstance = new MainThreadScheduler();
+        return sInstance;
+    }
+
+    @Override
+    public void schedule(Runnable task)
+    {
+        mHandler.post(task);
+    }
+}
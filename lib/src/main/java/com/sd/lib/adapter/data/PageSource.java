@@ -0,0 +1,52 @@
+package com.sd.lib.adapter.data;
+
+import java.util.List;
+
+/**
+ * 分页数据源
+ *
+ * @param <K> 页的key类型，例如页码或者游标
+ * @param <T> 实体类型
+ */
+public interface PageSource<K, T>
+{
+    /**
+     * 返回第pageIndex页的key
+     *
+     * @param pageIndex
+     * @return
+     */
+    K getPageKey(int pageIndex);
+
+    /**
+     * 加载一页数据，可以在任意线程加载，加载完成后调用callback
+     *
+     * @param key      页的key
+     * @param position 这一页第一个数据的位置
+     * @param count    这一页的数据数量
+     * @param callback
+     */
+    void loadPage(K key, int position, int count, LoadCallback<T> callback);
+
+    /**
+     * 加载结果回调，只有第一次回调有效
+     *
+     * @param <T>
+     */
+    interface LoadCallback<T>
+    {
+        /**
+         * 加载成功
+         *
+         * @param list
+         */
+        void onResult(List<T> list);
+
+        /**
+         * 加载失败
+         *
+         * @param e
+         */
+        void onError(Throwable e);
+    }
+}
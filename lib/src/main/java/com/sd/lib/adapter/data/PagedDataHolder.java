@@ -0,0 +1,785 @@
+package com.sd.lib.adapter.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 分页加载的{@link DataHolder}，数据总数已知，未加载的位置返回占位数据
+ * <p>
+ * 适配器绑定某个位置的时候会通过{@link AccessTracker}通知，距离该位置{@link #setPrefetchDistance(int)}以内的页会被加载，
+ * 加载在scheduler中发起，加载结果也在scheduler中处理，所以绑定数据的过程中不会通知数据变化，
+ * 加载完成后通过{@link DataChangeCallback#onDataRangeChanged(int, List)}通知，数据总数不变，
+ * 所以不支持添加、删除、移动等改变结构的操作，数据总数变化的时候调用{@link #refresh(int)}
+ * <p>
+ * 通过{@link #setMemoryBudget(long, Weigher)}设置内存预算后，已加载数据的总权重超过预算的时候，
+ * 离最后一次绑定位置最远的页会被回收为占位数据，再次绑定的时候重新加载，回收不会改变位置和数据总数，也不会通知回调
+ * <p>
+ * 如果使用{@link com.sd.lib.adapter.FSuperRecyclerAdapter}，需要设置不为null的占位数据
+ *
+ * @param <T>
+ */
+public class PagedDataHolder<T> extends AbstractDataHolder<T> implements AccessTracker
+{
+    private static final byte STATE_NONE = 0;
+    private static final byte STATE_LOADING = 1;
+    private static final byte STATE_LOADED = 2;
+    private static final byte STATE_ERROR = 3;
+
+    private final PageSource<?, T> mPageSource;
+    private final int mPageSize;
+    private final Scheduler mScheduler;
+
+    private int mSize;
+    private final List<List<T>> mListPage = new ArrayList<>();
+    private byte[] mPageState = new byte[0];
+    /**
+     * 每次重置数据后加1，用来忽略重置之前发起的加载
+     */
+    private int mGeneration;
+
+    private T mPlaceholder;
+    private int mPrefetchDistance;
+    private int mLastAccessPosition = -1;
+    private boolean mLoadScheduled;
+
+    private long mMemoryBudget = Long.MAX_VALUE;
+    private Weigher<T> mWeigher;
+    private long[] mPageWeight = new long[0];
+    private long mResidentWeight;
+    private int mResidentCount;
+    private int mEvictionCount;
+    private long mEvictedItemCount;
+
+    private final DataView mDataView = new DataView();
+
+    private final Runnable mLoadTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mLoadScheduled = false;
+            if (mSize > 0 && mLastAccessPosition >= 0)
+                loadAround(Math.min(mLastAccessPosition, mSize - 1));
+        }
+    };
+
+    /**
+     * 在主线程发起加载和处理加载结果
+     *
+     * @param source   数据源
+     * @param pageSize 每页的数据数量
+     * @param <K>
+     */
+    public <K> PagedDataHolder(PageSource<K, T> source, int pageSize)
+    {
+        this(source, pageSize, MainThreadScheduler.getInstance());
+    }
+
+    /**
+     * @param source    数据源
+     * @param pageSize  每页的数据数量
+     * @param scheduler 发起加载和处理加载结果的调度器，必须是修改数据的线程
+     * @param <K>
+     */
+    public <K> PagedDataHolder(PageSource<K, T> source, int pageSize, Scheduler scheduler)
+    {
+        if (source == null)
+            throw new NullPointerException("source is null");
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be greater than 0");
+        if (scheduler == null)
+            throw new NullPointerException("scheduler is null");
+
+        mPageSource = source;
+        mPageSize = pageSize;
+        mPrefetchDistance = pageSize;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * 设置未加载位置返回的占位数据，默认null
+     *
+     * @param placeholder
+     */
+    public void setPlaceholder(T placeholder)
+    {
+        mPlaceholder = placeholder;
+    }
+
+    /**
+     * 设置预加载距离，绑定某个位置的时候，前后距离在这个范围内的页都会被加载，默认为一页的数量
+     *
+     * @param distance
+     */
+    public void setPrefetchDistance(int distance)
+    {
+        mPrefetchDistance = Math.max(0, distance);
+    }
+
+    /**
+     * 设置内存预算，已加载数据的总权重超过预算的时候回收离最后一次绑定位置最远的页，
+     * 预加载距离以内的页不会被回收
+     *
+     * @param budget  预算，小于等于0表示不限制
+     * @param weigher 数据的权重计算，null-每个数据的权重为1，此时预算为数据数量
+     */
+    public void setMemoryBudget(long budget, Weigher<T> weigher)
+    {
+        mMemoryBudget = budget > 0 ? budget : Long.MAX_VALUE;
+        if (weigher != mWeigher)
+        {
+            mWeigher = weigher;
+            recalculateWeight();
+        }
+        trimToBudget();
+    }
+
+    /**
+     * 返回已加载数据的总权重
+     *
+     * @return
+     */
+    public long getResidentWeight()
+    {
+        return mResidentWeight;
+    }
+
+    /**
+     * 返回已加载数据的数量
+     *
+     * @return
+     */
+    public int getResidentCount()
+    {
+        return mResidentCount;
+    }
+
+    /**
+     * 返回被回收的页的累计数量
+     *
+     * @return
+     */
+    public int getEvictionCount()
+    {
+        return mEvictionCount;
+    }
+
+    /**
+     * 返回被回收的数据的累计数量
+     *
+     * @return
+     */
+    public long getEvictedItemCount()
+    {
+        return mEvictedItemCount;
+    }
+
+    /**
+     * 返回每页的数据数量
+     *
+     * @return
+     */
+    public int getPageSize()
+    {
+        return mPageSize;
+    }
+
+    /**
+     * 返回最后一次绑定的位置
+     *
+     * @return -1表示还未绑定过
+     */
+    public int getLastAccessPosition()
+    {
+        return mLastAccessPosition;
+    }
+
+    /**
+     * index位置的数据是否已经加载
+     *
+     * @param index
+     * @return
+     */
+    public boolean isLoaded(int index)
+    {
+        if (!isIndexLegal(index))
+            return false;
+
+        final List<T> page = mListPage.get(index / mPageSize);
+        return page != null && index % mPageSize < page.size();
+    }
+
+    /**
+     * 清空已加载的数据，设置新的数据总数，并重新加载最后一次绑定位置附近的页
+     *
+     * @param totalCount
+     */
+    public void refresh(int totalCount)
+    {
+        resetPages(Math.max(0, totalCount));
+        getNotifier().onDataChanged(mDataView);
+
+        if (mSize > 0)
+            loadAround(Math.max(0, Math.min(mLastAccessPosition, mSize - 1)));
+    }
+
+    /**
+     * 重新加载失败的页
+     */
+    public void retry()
+    {
+        for (int i = 0; i < mPageState.length; i++)
+        {
+            if (mPageState[i] == STATE_ERROR)
+                loadPage(i);
+        }
+    }
+
+    @Override
+    public void notifyAccess(int position)
+    {
+        if (!isIndexLegal(position))
+            return;
+
+        mLastAccessPosition = position;
+        // 绑定数据的时候不能通知数据变化，在下一次调度的时候加载最后一次绑定位置附近的页
+        if (!mLoadScheduled)
+        {
+            mLoadScheduled = true;
+            mScheduler.schedule(mLoadTask);
+        }
+    }
+
+    /**
+     * 加载position附近预加载距离以内还未加载的页，先加载position所在的页
+     *
+     * @param position
+     */
+    private void loadAround(int position)
+    {
+        final int page = position / mPageSize;
+        final int firstPage = Math.max(0, position - mPrefetchDistance) / mPageSize;
+        final int lastPage = Math.min(mSize - 1, position + mPrefetchDistance) / mPageSize;
+
+        if (mPageState[page] == STATE_NONE)
+            loadPage(page);
+
+        for (int i = page + 1; i <= lastPage; i++)
+        {
+            if (mPageState[i] == STATE_NONE)
+                loadPage(i);
+        }
+        for (int i = page - 1; i >= firstPage; i--)
+        {
+            if (mPageState[i] == STATE_NONE)
+                loadPage(i);
+        }
+    }
+
+    private void resetPages(int size)
+    {
+        mGeneration++;
+        mSize = size;
+
+        final int pageCount = (size + mPageSize - 1) / mPageSize;
+        mListPage.clear();
+        for (int i = 0; i < pageCount; i++)
+        {
+            mListPage.add(null);
+        }
+        mPageState = new byte[pageCount];
+        mPageWeight = new long[pageCount];
+        mResidentWeight = 0;
+        mResidentCount = 0;
+    }
+
+    private long weigh(T data)
+    {
+        return mWeigher == null ? 1 : mWeigher.weigh(data);
+    }
+
+    /**
+     * 保存page的数据并计算权重
+     *
+     * @param page
+     * @param listPage
+     */
+    private void putPage(int page, List<T> listPage)
+    {
+        long weight = 0;
+        for (int i = 0; i < listPage.size(); i++)
+        {
+            weight += weigh(listPage.get(i));
+        }
+
+        mListPage.set(page, listPage);
+        mPageState[page] = STATE_LOADED;
+        mPageWeight[page] = weight;
+        mResidentWeight += weight;
+        mResidentCount += listPage.size();
+    }
+
+    /**
+     * 更新page中offset位置的数据，并更新权重
+     *
+     * @param page
+     * @param offset
+     * @param data
+     */
+    private void setPageItem(int page, int offset, T data)
+    {
+        final T old = mListPage.get(page).set(offset, data);
+        if (mWeigher != null)
+        {
+            final long delta = weigh(data) - weigh(old);
+            mPageWeight[page] += delta;
+            mResidentWeight += delta;
+        }
+    }
+
+    private void recalculateWeight()
+    {
+        mResidentWeight = 0;
+        for (int i = 0; i < mListPage.size(); i++)
+        {
+            final List<T> listPage = mListPage.get(i);
+            if (listPage == null)
+                continue;
+
+            long weight = 0;
+            for (int j = 0; j < listPage.size(); j++)
+            {
+                weight += weigh(listPage.get(j));
+            }
+            mPageWeight[i] = weight;
+            mResidentWeight += weight;
+        }
+    }
+
+    /**
+     * 总权重超过预算的时候，从离最后一次绑定位置最远的页开始回收，直到不超过预算或者只剩下预加载距离以内的页
+     */
+    private void trimToBudget()
+    {
+        if (mResidentWeight <= mMemoryBudget || mSize <= 0)
+            return;
+
+        final int position = Math.max(0, Math.min(mLastAccessPosition, mSize - 1));
+        final int accessPage = position / mPageSize;
+        final int firstKeep = Math.max(0, position - mPrefetchDistance) / mPageSize;
+        final int lastKeep = Math.min(mSize - 1, position + mPrefetchDistance) / mPageSize;
+
+        // 从两端向访问位置收缩，每次回收离访问位置更远的一端
+        int low = 0;
+        int high = mPageState.length - 1;
+        while (mResidentWeight > mMemoryBudget)
+        {
+            while (low < firstKeep && mPageState[low] != STATE_LOADED)
+            {
+                low++;
+            }
+            while (high > lastKeep && mPageState[high] != STATE_LOADED)
+            {
+                high--;
+            }
+
+            final boolean canLow = low < firstKeep;
+            final boolean canHigh = high > lastKeep;
+            if (!canLow && !canHigh)
+                break;
+
+            if (canLow && (!canHigh || accessPage - low >= high - accessPage))
+                evictPage(low++);
+            else
+                evictPage(high--);
+        }
+    }
+
+    private void evictPage(int page)
+    {
+        final List<T> listPage = mListPage.get(page);
+        mListPage.set(page, null);
+        mPageState[page] = STATE_NONE;
+
+        mResidentWeight -= mPageWeight[page];
+        mResidentCount -= listPage.size();
+        mPageWeight[page] = 0;
+
+        mEvictionCount++;
+        mEvictedItemCount += listPage.size();
+    }
+
+    private void loadPage(int page)
+    {
+        mPageState[page] = STATE_LOADING;
+
+        final int position = page * mPageSize;
+        final int count = Math.min(mPageSize, mSize - position);
+        requestPage(mPageSource, page, position, count);
+    }
+
+    private <K> void requestPage(PageSource<K, T> source, int page, int position, int count)
+    {
+        final K key = source.getPageKey(page);
+        source.loadPage(key, position, count, new PageRequest(page, mGeneration));
+    }
+
+    private void onPageResult(int page, int generation, List<T> list)
+    {
+        if (generation != mGeneration || mPageState[page] != STATE_LOADING)
+            return;
+
+        final int position = page * mPageSize;
+        final int count = Math.min(Math.min(mPageSize, mSize - position), list.size());
+        final List<T> listPage = new ArrayList<>(transformData(list.subList(0, count)));
+        putPage(page, listPage);
+
+        if (count == 1)
+            getNotifier().onDataChanged(position, listPage.get(0));
+        else if (count > 1)
+            getNotifier().onDataRangeChanged(position, obtainPayload(listPage, 0, count));
+
+        trimToBudget();
+    }
+
+    private void onPageError(int page, int generation)
+    {
+        if (generation != mGeneration || mPageState[page] != STATE_LOADING)
+            return;
+
+        mPageState[page] = STATE_ERROR;
+    }
+
+    /**
+     * 返回index位置的数据，未加载返回占位数据，不会触发加载
+     *
+     * @param index
+     * @return
+     */
+    private T peek(int index)
+    {
+        final List<T> page = mListPage.get(index / mPageSize);
+        if (page == null)
+            return mPlaceholder;
+
+        final int offset = index % mPageSize;
+        return offset < page.size() ? page.get(offset) : mPlaceholder;
+    }
+
+    private static UnsupportedOperationException unsupported()
+    {
+        return new UnsupportedOperationException("PagedDataHolder does not support structural modification, use refresh(int) instead");
+    }
+
+    //---------- modify start ----------
+
+    /**
+     * 设置全部加载完成的数据集，之后可以通过{@link #refresh(int)}切换回分页加载
+     *
+     * @param list
+     */
+    @Override
+    public void setData(List<? extends T> list)
+    {
+        final List<T> listAll = transformData(list);
+        final int size = listAll == null ? 0 : listAll.size();
+        resetPages(size);
+
+        for (int i = 0; i < mListPage.size(); i++)
+        {
+            final int start = i * mPageSize;
+            final int end = Math.min(size, start + mPageSize);
+            putPage(i, new ArrayList<>(listAll.subList(start, end)));
+        }
+
+        getNotifier().onDataChanged(mDataView);
+        trimToBudget();
+    }
+
+    @Override
+    public boolean addData(T data)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean addData(List<? extends T> list)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public void addData(int index, T data)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean addData(int index, List<? extends T> list)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean removeData(T data)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public T removeData(int index)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public List<T> removeData(int index, int count)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public int removeIf(DataPredicate<T> predicate)
+    {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean moveData(int fromIndex, int toIndex)
+    {
+        throw unsupported();
+    }
+
+    /**
+     * 修改index位置的数据，未加载的位置会被忽略
+     *
+     * @param index
+     * @param data
+     */
+    @Override
+    public void updateData(int index, T data)
+    {
+        if (data == null || !isLoaded(index))
+            return;
+
+        data = transformData(data);
+        setPageItem(index / mPageSize, index % mPageSize, data);
+
+        getNotifier().onDataChanged(index, data);
+    }
+
+    /**
+     * 修改index位置开始的数据，范围内有未加载的位置会被忽略
+     *
+     * @param index
+     * @param list
+     */
+    @Override
+    public void updateData(int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return;
+
+        final int count = list.size();
+        if (index < 0 || index + count > mSize)
+            return;
+
+        for (int i = index; i < index + count; i++)
+        {
+            if (!isLoaded(i))
+                return;
+        }
+
+        final List<T> listTransform = transformData(list);
+        for (int i = 0; i < count; i++)
+        {
+            final int position = index + i;
+            setPageItem(position / mPageSize, position % mPageSize, listTransform.get(i));
+        }
+
+        if (count == 1)
+            getNotifier().onDataChanged(index, peek(index));
+        else
+            getNotifier().onDataRangeChanged(index, obtainPayload(mDataView, index, count));
+    }
+
+    /**
+     * 转换已加载的数据
+     *
+     * @param operator
+     */
+    @Override
+    public void replaceAll(DataTransform<T> operator)
+    {
+        if (operator == null)
+            return;
+
+        int start = -1;
+        for (int i = 0; i <= mSize; i++)
+        {
+            boolean changed = false;
+            if (i < mSize && isLoaded(i))
+            {
+                final int page = i / mPageSize;
+                final int offset = i % mPageSize;
+                final T item = mListPage.get(page).get(offset);
+                final T result = operator.transform(item);
+                if (result != null && result != item)
+                {
+                    setPageItem(page, offset, transformData(result));
+                    changed = true;
+                }
+            }
+
+            if (changed)
+            {
+                if (start < 0)
+                    start = i;
+            } else if (start >= 0)
+            {
+                // 连续变化的区间结束
+                if (i - start == 1)
+                    getNotifier().onDataChanged(start, peek(start));
+                else
+                    getNotifier().onDataRangeChanged(start, obtainPayload(mDataView, start, i - start));
+                start = -1;
+            }
+        }
+    }
+
+    //---------- modify end ----------
+
+    @Override
+    public T get(int index)
+    {
+        if (isIndexLegal(index))
+            return peek(index);
+        else
+            return null;
+    }
+
+    @Override
+    public int size()
+    {
+        return mSize;
+    }
+
+    @Override
+    public int indexOf(T data)
+    {
+        if (data == null)
+            return -1;
+
+        for (int i = 0; i < mListPage.size(); i++)
+        {
+            final List<T> page = mListPage.get(i);
+            if (page == null)
+                continue;
+
+            final int offset = page.indexOf(data);
+            if (offset >= 0)
+                return i * mPageSize + offset;
+        }
+        return -1;
+    }
+
+    /**
+     * 返回数据集的只读视图，未加载的位置为占位数据，访问视图不会触发加载
+     *
+     * @return
+     */
+    @Override
+    public List<T> getData()
+    {
+        return mDataView;
+    }
+
+    /**
+     * 数据的权重计算，例如估算数据占用的内存大小
+     *
+     * @param <T>
+     */
+    public interface Weigher<T>
+    {
+        /**
+         * 返回数据的权重
+         *
+         * @param data
+         * @return
+         */
+        long weigh(T data);
+    }
+
+    private final class DataView extends AbstractList<T> implements RandomAccess
+    {
+        @Override
+        public T get(int index)
+        {
+            if (index < 0 || index >= mSize)
+                throw new IndexOutOfBoundsException("index:" + index + " size:" + mSize);
+
+            return peek(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return mSize;
+        }
+    }
+
+    private final class PageRequest implements PageSource.LoadCallback<T>
+    {
+        private final int mPage;
+        private final int mGeneration;
+        private final AtomicBoolean mFinished = new AtomicBoolean();
+
+        public PageRequest(int page, int generation)
+        {
+            mPage = page;
+            mGeneration = generation;
+        }
+
+        @Override
+        public void onResult(List<T> list)
+        {
+            if (!mFinished.compareAndSet(false, true))
+                return;
+
+            final List<T> listResult = list == null ? new ArrayList<T>() : new ArrayList<>(list);
+            deliver(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onPageResult(mPage, mGeneration, listResult);
+                }
+            });
+        }
+
+        @Override
+        public void onError(Throwable e)
+        {
+            if (!mFinished.compareAndSet(false, true))
+                return;
+
+            deliver(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onPageError(mPage, mGeneration);
+                }
+            });
+        }
+
+        private void deliver(Runnable runnable)
+        {
+            // 同步加载的时候也不马上处理，避免在发起加载的过程中通知数据变化
+            mScheduler.schedule(runnable);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.sd.lib.adapter.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 把一组数据按顺序分块，在线程池中并行转换的{@link DataHolder.BulkDataTransform}
+ * <p>
+ * 调用线程会转换第一块并等待其他块转换完成，结果的顺序和原数据一致，全部完成后才返回给{@link DataHolder}
+ * <p>
+ * 只有多核并且单个数据的转换比较耗时的时候才会更快，单核的时候反而有少量的额外开销
+ *
+ * @param <T>
+ */
+public class ParallelDataTransform<T> implements DataHolder.BulkDataTransform<T>
+{
+    /**
+     * 默认每块的数据数量
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final DataHolder.DataTransform<T> mTransform;
+    private final ExecutorService mExecutor;
+    private final int mChunkSize;
+
+    public ParallelDataTransform(DataHolder.DataTransform<T> transform, ExecutorService executor)
+    {
+        this(transform, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param transform 单个数据的转换器，会在多个线程中同时调用
+     * @param executor  转换用的线程池
+     * @param chunkSize 每块的数据数量
+     */
+    public ParallelDataTransform(DataHolder.DataTransform<T> transform, ExecutorService executor, int chunkSize)
+    {
+        if (transform == null)
+            throw new NullPointerException("transform is null");
+        if (executor == null)
+            throw new NullPointerException("executor is null");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+
+        mTransform = transform;
+        mExecutor = executor;
+        mChunkSize = chunkSize;
+    }
+
+    @Override
+    public T transform(T source)
+    {
+        return mTransform.transform(source);
+    }
+
+    @Override
+    public List<T> transformList(List<T> source)
+    {
+        // 先复制到数组，避免多个线程同时访问source，例如TreeList的查找缓存不是线程安全的
+        final Object[] arrSource = source.toArray();
+        final int size = arrSource.length;
+        final Object[] arrResult = new Object[size];
+        if (size <= mChunkSize)
+        {
+            new Chunk(arrSource, arrResult, 0, size).run();
+            return (List<T>) Arrays.asList(arrResult);
+        }
+
+        final List<Future<?>> listFuture = new ArrayList<>(size / mChunkSize);
+        for (int start = mChunkSize; start < size; start += mChunkSize)
+        {
+            final int end = Math.min(size, start + mChunkSize);
+            listFuture.add(mExecutor.submit(new Chunk(arrSource, arrResult, start, end)));
+        }
+
+        boolean interrupted = false;
+        try
+        {
+            new Chunk(arrSource, arrResult, 0, mChunkSize).run();
+
+            for (Future<?> future : listFuture)
+            {
+                while (true)
+                {
+                    try
+                    {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e)
+                    {
+                        // 结果写在共享数组中，必须等待所有块完成
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e)
+        {
+            cancel(listFuture);
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (RuntimeException e)
+        {
+            cancel(listFuture);
+            throw e;
+        } finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        return (List<T>) Arrays.asList(arrResult);
+    }
+
+    private static void cancel(List<Future<?>> listFuture)
+    {
+        for (Future<?> future : listFuture)
+        {
+            future.cancel(false);
+        }
+    }
+
+    private final class Chunk implements Runnable
+    {
+        private final Object[] mSource;
+        private final Object[] mResult;
+        private final int mStart;
+        private final int mEnd;
+
+        public Chunk(Object[] source, Object[] result, int start, int end)
+        {
+            mSource = source;
+            mResult = result;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        public void run()
+        {
+            for (int i = mStart; i < mEnd; i++)
+            {
+                mResult[i] = mTransform.transform((T) mSource[i]);
+            }
+        }
+    }
+}
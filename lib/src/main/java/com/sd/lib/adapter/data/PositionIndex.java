@@ -0,0 +1,284 @@
+package com.sd.lib.adapter.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 按位置保存key的平衡树（按数量计数的treap），每个key对应一个节点，节点在插入、删除、移动之后仍然有效，
+ * 通过节点向上查找可以在O(log n)内得到key当前的位置
+ *
+ * @param <K>
+ */
+final class PositionIndex<K>
+{
+    private final Random mRandom = new Random();
+    private Node<K> mRoot;
+
+    /**
+     * split的结果
+     */
+    private Node<K> mSplitLeft;
+    private Node<K> mSplitRight;
+
+    public int size()
+    {
+        return size(mRoot);
+    }
+
+    public void clear()
+    {
+        mRoot = null;
+    }
+
+    /**
+     * 返回节点当前的位置
+     *
+     * @param node
+     * @return
+     */
+    public int indexOf(Node<K> node)
+    {
+        int index = size(node.mLeft);
+        while (node.mParent != null)
+        {
+            final Node<K> parent = node.mParent;
+            if (node == parent.mRight)
+                index += size(parent.mLeft) + 1;
+            node = parent;
+        }
+        return index;
+    }
+
+    /**
+     * 返回index位置的节点
+     *
+     * @param index
+     * @return
+     */
+    public Node<K> get(int index)
+    {
+        Node<K> node = mRoot;
+        while (node != null)
+        {
+            final int left = size(node.mLeft);
+            if (index < left)
+            {
+                node = node.mLeft;
+            } else if (index > left)
+            {
+                index -= left + 1;
+                node = node.mRight;
+            } else
+            {
+                return node;
+            }
+        }
+        throw new IndexOutOfBoundsException("index:" + index + " size:" + size());
+    }
+
+    /**
+     * 在index位置插入一组key
+     *
+     * @param index
+     * @param keys
+     * @return 按顺序返回新的节点
+     */
+    public List<Node<K>> insert(int index, List<K> keys)
+    {
+        final List<Node<K>> listNode = new ArrayList<>(keys.size());
+        for (K key : keys)
+        {
+            final Node<K> node = new Node<>(key, mRandom.nextInt());
+            listNode.add(node);
+        }
+        if (listNode.isEmpty())
+            return listNode;
+
+        split(mRoot, index);
+        final Node<K> left = mSplitLeft;
+        final Node<K> right = mSplitRight;
+        mRoot = merge(merge(left, build(listNode)), right);
+        mRoot.mParent = null;
+        return listNode;
+    }
+
+    /**
+     * 把节点插入到index位置，节点必须是已经被移除的
+     *
+     * @param index
+     * @param node
+     */
+    public void insert(int index, Node<K> node)
+    {
+        node.mLeft = null;
+        node.mRight = null;
+        node.mSize = 1;
+
+        split(mRoot, index);
+        final Node<K> left = mSplitLeft;
+        final Node<K> right = mSplitRight;
+        mRoot = merge(merge(left, node), right);
+        mRoot.mParent = null;
+    }
+
+    /**
+     * 移除[index, index + count)范围的节点
+     *
+     * @param index
+     * @param count
+     * @return 被移除的节点组成的子树
+     */
+    public Node<K> remove(int index, int count)
+    {
+        split(mRoot, index);
+        final Node<K> left = mSplitLeft;
+        split(mSplitRight, count);
+        final Node<K> removed = mSplitLeft;
+        final Node<K> right = mSplitRight;
+
+        mRoot = merge(left, right);
+        if (mRoot != null)
+            mRoot.mParent = null;
+        if (removed != null)
+            removed.mParent = null;
+        return removed;
+    }
+
+    /**
+     * 按顺序把子树中的节点添加到list
+     *
+     * @param node
+     * @param list
+     */
+    public static <K> void collect(Node<K> node, List<Node<K>> list)
+    {
+        while (node != null)
+        {
+            collect(node.mLeft, list);
+            list.add(node);
+            node = node.mRight;
+        }
+    }
+
+    /**
+     * 按顺序的节点构造笛卡尔树，O(n)
+     *
+     * @param listNode
+     * @return 根节点
+     */
+    private Node<K> build(List<Node<K>> listNode)
+    {
+        final List<Node<K>> stack = new ArrayList<>();
+        for (Node<K> node : listNode)
+        {
+            Node<K> last = null;
+            while (!stack.isEmpty() && stack.get(stack.size() - 1).mPriority < node.mPriority)
+            {
+                last = stack.remove(stack.size() - 1);
+            }
+            node.mLeft = last;
+            if (!stack.isEmpty())
+                stack.get(stack.size() - 1).mRight = node;
+            stack.add(node);
+        }
+
+        final Node<K> root = stack.isEmpty() ? null : stack.get(0);
+        updateTree(root);
+        return root;
+    }
+
+    private static <K> void updateTree(Node<K> node)
+    {
+        if (node == null)
+            return;
+
+        updateTree(node.mLeft);
+        updateTree(node.mRight);
+        update(node);
+    }
+
+    /**
+     * 把node分成前count个节点和剩下的节点，结果保存在{@link #mSplitLeft}和{@link #mSplitRight}
+     *
+     * @param node
+     * @param count
+     */
+    private void split(Node<K> node, int count)
+    {
+        if (node == null)
+        {
+            mSplitLeft = null;
+            mSplitRight = null;
+            return;
+        }
+
+        if (size(node.mLeft) < count)
+        {
+            split(node.mRight, count - size(node.mLeft) - 1);
+            node.mRight = mSplitLeft;
+            update(node);
+            mSplitLeft = node;
+        } else
+        {
+            split(node.mLeft, count);
+            node.mLeft = mSplitRight;
+            update(node);
+            mSplitRight = node;
+        }
+        if (mSplitLeft != null)
+            mSplitLeft.mParent = null;
+        if (mSplitRight != null)
+            mSplitRight.mParent = null;
+    }
+
+    private static <K> Node<K> merge(Node<K> left, Node<K> right)
+    {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+
+        if (left.mPriority > right.mPriority)
+        {
+            left.mRight = merge(left.mRight, right);
+            update(left);
+            return left;
+        } else
+        {
+            right.mLeft = merge(left, right.mLeft);
+            update(right);
+            return right;
+        }
+    }
+
+    private static <K> void update(Node<K> node)
+    {
+        node.mSize = 1 + size(node.mLeft) + size(node.mRight);
+        if (node.mLeft != null)
+            node.mLeft.mParent = node;
+        if (node.mRight != null)
+            node.mRight.mParent = node;
+    }
+
+    private static int size(Node<?> node)
+    {
+        return node == null ? 0 : node.mSize;
+    }
+
+    static final class Node<K>
+    {
+        K mKey;
+        final int mPriority;
+        int mSize = 1;
+        Node<K> mLeft;
+        Node<K> mRight;
+        Node<K> mParent;
+
+        Node(K key, int priority)
+        {
+            mKey = key;
+            mPriority = priority;
+        }
+    }
+}
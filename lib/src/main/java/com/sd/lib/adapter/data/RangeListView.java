@@ -0,0 +1,57 @@
+package com.sd.lib.adapter.data;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 数据集某个范围的只读视图，不复制数据，可以重复使用
+ *
+ * @param <T>
+ */
+final class RangeListView<T> extends AbstractList<T> implements RandomAccess
+{
+    private List<T> mSource;
+    private int mOffset;
+    private int mSize;
+
+    /**
+     * 指向source的[offset, offset + size)范围
+     *
+     * @param source
+     * @param offset
+     * @param size
+     * @return
+     */
+    RangeListView<T> reset(List<T> source, int offset, int size)
+    {
+        mSource = source;
+        mOffset = offset;
+        mSize = size;
+        modCount++;
+        return this;
+    }
+
+    /**
+     * 释放对数据集的引用
+     */
+    void release()
+    {
+        reset(null, 0, 0);
+    }
+
+    @Override
+    public T get(int index)
+    {
+        if (index < 0 || index >= mSize)
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + mSize);
+
+        return mSource.get(mOffset + index);
+    }
+
+    @Override
+    public int size()
+    {
+        return mSize;
+    }
+}
@@ -0,0 +1,16 @@
+package com.sd.lib.adapter.data;
+
+/**
+ * 调度器，把任务放到指定的线程中执行，测试的时候可以用同步执行或者手动执行的实现
+ * <p>
+ * 在主线程调度使用{@link MainThreadScheduler#getInstance()}
+ */
+public interface Scheduler
+{
+    /**
+     * 安排任务执行
+     *
+     * @param task
+     */
+    void schedule(Runnable task);
+}
@@ -0,0 +1,807 @@
+package com.sd.lib.adapter.data;
+
+import com.sd.lib.adapter.data.diff.DiffCallback;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按分组自动插入分组头的{@link DataHolder}，包装一个源数据，源数据中连续的同一个分组的数据前面会插入一个分组头
+ * <p>
+ * 每个分组的数据数量保存在树状数组中，位置和分组的互相转换是O(log s)，s是分组的数量，
+ * 源数据的变化会增量更新分组，只通知分组头和数据实际插入、删除、变化的位置
+ * <p>
+ * 源数据一般是按分组排序的，例如{@link SortedDataHolder}，同一个分组的数据不连续的话会有多个分组头
+ *
+ * @param <T>
+ */
+public class SectionedDataHolder<T> extends AbstractDataHolder<T>
+{
+    private final DataHolder<T> mSource;
+    private final SectionProvider<T> mProvider;
+
+    /**
+     * 按源数据回调保存的数据和它们的分组
+     */
+    private final List<T> mItems = new ArrayList<>();
+    private final List<Object> mKeys = new ArrayList<>();
+
+    private final List<Section<T>> mSections = new ArrayList<>();
+    /**
+     * 每个分组的数据数量(不包括分组头)的树状数组，下标从1开始
+     */
+    private int[] mTree = new int[1];
+
+    private final List<T> mDataView = new AbstractList<T>()
+    {
+        @Override
+        public T get(int index)
+        {
+            return SectionedDataHolder.this.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return SectionedDataHolder.this.size();
+        }
+    };
+
+    private final PayloadCallback<T> mSourceCallback = new PayloadCallback<T>()
+    {
+        @Override
+        public void onDataChanged(List<T> list)
+        {
+            rebuild(list);
+            getNotifier().onDataChanged(mDataView);
+        }
+
+        @Override
+        public void onDataChanged(int index, T data)
+        {
+            changeEntry(index, data, null);
+        }
+
+        @Override
+        public void onDataChanged(int index, T data, Object payload)
+        {
+            changeEntry(index, data, payload);
+        }
+
+        @Override
+        public void onDataAdded(int index, List<T> list)
+        {
+            beginBatch();
+            try
+            {
+                for (int i = 0; i < list.size(); i++)
+                {
+                    insertEntry(index + i, list.get(i));
+                }
+            } finally
+            {
+                commitBatch();
+            }
+        }
+
+        @Override
+        public void onDataRemoved(int index, T data)
+        {
+            removeEntry(index);
+        }
+
+        @Override
+        public void onDataRangeChanged(int index, List<T> list)
+        {
+            beginBatch();
+            try
+            {
+                for (int i = 0; i < list.size(); i++)
+                {
+                    changeEntry(index + i, list.get(i), null);
+                }
+            } finally
+            {
+                commitBatch();
+            }
+        }
+
+        @Override
+        public void onDataRangeRemoved(int index, List<T> list)
+        {
+            beginBatch();
+            try
+            {
+                for (int i = list.size() - 1; i >= 0; i--)
+                {
+                    removeEntry(index + i);
+                }
+            } finally
+            {
+                commitBatch();
+            }
+        }
+
+        @Override
+        public void onDataMoved(int fromIndex, int toIndex, T data)
+        {
+            beginBatch();
+            try
+            {
+                final T item = mItems.get(fromIndex);
+                removeEntry(fromIndex);
+                insertEntry(toIndex, item);
+            } finally
+            {
+                commitBatch();
+            }
+        }
+    };
+
+    /**
+     * @param source   源数据
+     * @param provider 分组
+     */
+    public SectionedDataHolder(DataHolder<T> source, SectionProvider<T> provider)
+    {
+        if (source == null)
+            throw new NullPointerException("source is null");
+        if (provider == null)
+            throw new NullPointerException("provider is null");
+
+        mSource = source;
+        mProvider = provider;
+        rebuild(source.getData());
+        source.addDataChangeCallback(mSourceCallback);
+    }
+
+    /**
+     * 返回源数据
+     *
+     * @return
+     */
+    public DataHolder<T> getSource()
+    {
+        return mSource;
+    }
+
+    /**
+     * 停止监听源数据的变化
+     */
+    public void release()
+    {
+        mSource.removeDataChangeCallback(mSourceCallback);
+    }
+
+    //---------- section start ----------
+
+    /**
+     * 返回分组的数量
+     *
+     * @return
+     */
+    public int getSectionCount()
+    {
+        return mSections.size();
+    }
+
+    /**
+     * 返回所有分组，可以直接用于{@link android.widget.SectionIndexer#getSections()}
+     *
+     * @return
+     */
+    public Object[] getSections()
+    {
+        final Object[] sections = new Object[mSections.size()];
+        for (int i = 0; i < sections.length; i++)
+        {
+            sections[i] = mSections.get(i).mKey;
+        }
+        return sections;
+    }
+
+    /**
+     * 返回分组头的位置，O(log s)
+     *
+     * @param section
+     * @return
+     */
+    public int getPositionForSection(int section)
+    {
+        if (mSections.isEmpty())
+            return 0;
+
+        if (section < 0)
+            section = 0;
+        if (section >= mSections.size())
+            section = mSections.size() - 1;
+
+        return getSourceStart(section) + section;
+    }
+
+    /**
+     * 返回position所在的分组，O(log s)
+     *
+     * @param position
+     * @return
+     */
+    public int getSectionForPosition(int position)
+    {
+        if (mSections.isEmpty())
+            return 0;
+
+        if (position < 0)
+            return 0;
+        if (position >= size())
+            return mSections.size() - 1;
+
+        return findSectionByPosition(position);
+    }
+
+    /**
+     * position位置是否是分组头
+     *
+     * @param position
+     * @return
+     */
+    public boolean isHeader(int position)
+    {
+        if (!isIndexLegal(position))
+            return false;
+
+        return position == getPositionForSection(findSectionByPosition(position));
+    }
+
+    /**
+     * 返回position对应的源数据位置
+     *
+     * @param position
+     * @return -1表示position不合法或者是分组头
+     */
+    public int getSourceIndex(int position)
+    {
+        if (!isIndexLegal(position))
+            return -1;
+
+        final int section = findSectionByPosition(position);
+        final int index = position - section - 1;
+        return index < getSourceStart(section) ? -1 : index;
+    }
+
+    private static boolean isSameSection(Object a, Object b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private Section<T> newSection(Object key, int count)
+    {
+        return new Section<>(key, mProvider.createHeader(key), count);
+    }
+
+    private void rebuild(List<T> list)
+    {
+        mItems.clear();
+        mKeys.clear();
+        mSections.clear();
+
+        mItems.addAll(list);
+        Section<T> last = null;
+        for (T item : list)
+        {
+            final Object key = mProvider.getSection(item);
+            mKeys.add(key);
+
+            if (last != null && isSameSection(last.mKey, key))
+            {
+                last.mCount++;
+            } else
+            {
+                last = newSection(key, 1);
+                mSections.add(last);
+            }
+        }
+        rebuildTree();
+    }
+
+    private void rebuildTree()
+    {
+        final int count = mSections.size();
+        mTree = new int[count + 1];
+        for (int i = 0; i < count; i++)
+        {
+            final int node = i + 1;
+            mTree[node] += mSections.get(i).mCount;
+            final int parent = node + (node & -node);
+            if (parent <= count)
+                mTree[parent] += mTree[node];
+        }
+    }
+
+    private void updateTree(int section, int delta)
+    {
+        for (int node = section + 1; node < mTree.length; node += node & -node)
+        {
+            mTree[node] += delta;
+        }
+    }
+
+    /**
+     * 返回section之前的分组的数据数量，也就是section第一个数据的源数据位置
+     *
+     * @param section
+     * @return
+     */
+    private int getSourceStart(int section)
+    {
+        int sum = 0;
+        for (int node = section; node > 0; node -= node & -node)
+        {
+            sum += mTree[node];
+        }
+        return sum;
+    }
+
+    /**
+     * 返回源数据位置所在的分组，index必须小于源数据数量
+     *
+     * @param index
+     * @return
+     */
+    private int findSectionBySource(int index)
+    {
+        final int count = mTree.length - 1;
+        int node = 0;
+        for (int step = Integer.highestOneBit(Math.max(count, 1)); step > 0; step >>= 1)
+        {
+            final int next = node + step;
+            if (next <= count && mTree[next] <= index)
+            {
+                node = next;
+                index -= mTree[next];
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 返回位置所在的分组，position必须合法
+     *
+     * @param position
+     * @return
+     */
+    private int findSectionByPosition(int position)
+    {
+        // 每个树状数组节点覆盖(next & -next)个分组，加上这些分组头的数量
+        final int count = mTree.length - 1;
+        int node = 0;
+        for (int step = Integer.highestOneBit(Math.max(count, 1)); step > 0; step >>= 1)
+        {
+            final int next = node + step;
+            if (next <= count)
+            {
+                final int size = mTree[next] + (next & -next);
+                if (size <= position)
+                {
+                    node = next;
+                    position -= size;
+                }
+            }
+        }
+        return node;
+    }
+
+    //---------- section end ----------
+
+    /**
+     * 在源数据index位置插入一个数据
+     *
+     * @param index
+     * @param item
+     */
+    private void insertEntry(int index, T item)
+    {
+        final Object key = mProvider.getSection(item);
+        final int size = mItems.size();
+        final int section = index < size ? findSectionBySource(index) : mSections.size();
+        final int start = index < size ? getSourceStart(section) : size;
+
+        mItems.add(index, item);
+        mKeys.add(index, key);
+
+        if (index > start)
+        {
+            final Section<T> current = mSections.get(section);
+            if (isSameSection(current.mKey, key))
+            {
+                current.mCount++;
+                updateTree(section, 1);
+                getNotifier().onDataAdded(index + section + 1, Collections.singletonList(item));
+                return;
+            }
+
+            // 插入到分组中间并且分组不同，拆分成三个分组
+            final int leftCount = index - start;
+            final Section<T> insert = newSection(key, 1);
+            final Section<T> right = newSection(current.mKey, current.mCount - leftCount);
+            current.mCount = leftCount;
+            mSections.add(section + 1, insert);
+            mSections.add(section + 2, right);
+            rebuildTree();
+
+            final List<T> list = new ArrayList<>(3);
+            list.add(insert.mHeader);
+            list.add(item);
+            list.add(right.mHeader);
+            getNotifier().onDataAdded(index + section + 1, list);
+            return;
+        }
+
+        // 插入到两个分组之间
+        final Section<T> left = section > 0 ? mSections.get(section - 1) : null;
+        final Section<T> right = section < mSections.size() ? mSections.get(section) : null;
+        if (left != null && isSameSection(left.mKey, key))
+        {
+            left.mCount++;
+            updateTree(section - 1, 1);
+            getNotifier().onDataAdded(index + section, Collections.singletonList(item));
+        } else if (right != null && isSameSection(right.mKey, key))
+        {
+            right.mCount++;
+            updateTree(section, 1);
+            getNotifier().onDataAdded(index + section + 1, Collections.singletonList(item));
+        } else
+        {
+            final Section<T> insert = newSection(key, 1);
+            mSections.add(section, insert);
+            rebuildTree();
+
+            final List<T> list = new ArrayList<>(2);
+            list.add(insert.mHeader);
+            list.add(item);
+            getNotifier().onDataAdded(index + section, list);
+        }
+    }
+
+    /**
+     * 删除源数据index位置的数据
+     *
+     * @param index
+     */
+    private void removeEntry(int index)
+    {
+        final int section = findSectionBySource(index);
+        final Section<T> current = mSections.get(section);
+        final T item = mItems.remove(index);
+        mKeys.remove(index);
+
+        if (current.mCount > 1)
+        {
+            current.mCount--;
+            updateTree(section, -1);
+            getNotifier().onDataRemoved(index + section + 1, item);
+            return;
+        }
+
+        // 分组为空，删除分组头
+        mSections.remove(section);
+        final List<T> list = new ArrayList<>(2);
+        list.add(current.mHeader);
+        list.add(item);
+
+        // 前后两个分组相同的话合并，删除后面的分组头
+        Section<T> merged = null;
+        if (section > 0 && section < mSections.size())
+        {
+            final Section<T> left = mSections.get(section - 1);
+            final Section<T> right = mSections.get(section);
+            if (isSameSection(left.mKey, right.mKey))
+            {
+                left.mCount += right.mCount;
+                mSections.remove(section);
+                merged = right;
+            }
+        }
+        rebuildTree();
+
+        getNotifier().onDataRangeRemoved(index + section, list);
+        if (merged != null)
+            getNotifier().onDataRemoved(index + section, merged.mHeader);
+    }
+
+    /**
+     * 源数据index位置的数据发生变化，分组变化的话删除后重新插入
+     *
+     * @param index
+     * @param item
+     * @param payload 分组没有变化的时候带着payload通知变化
+     */
+    private void changeEntry(int index, T item, Object payload)
+    {
+        final Object key = mProvider.getSection(item);
+        if (isSameSection(mKeys.get(index), key))
+        {
+            mItems.set(index, item);
+            notifyDataChanged(index + findSectionBySource(index) + 1, item, payload);
+            return;
+        }
+
+        beginBatch();
+        try
+        {
+            removeEntry(index);
+            insertEntry(index, item);
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    /**
+     * 返回position在源数据中插入的位置，分组头的位置插入到分组的第一个数据前面
+     *
+     * @param position
+     * @return
+     */
+    private int toSourceInsertIndex(int position)
+    {
+        if (position >= size())
+            return mSource.size();
+
+        final int section = findSectionByPosition(position);
+        return Math.max(getSourceStart(section), position - section - 1);
+    }
+
+    @Override
+    public void setDataTransform(DataTransform<T> transform)
+    {
+        mSource.setDataTransform(transform);
+    }
+
+    @Override
+    public void setDiffCallback(DiffCallback<T> callback)
+    {
+        mSource.setDiffCallback(callback);
+    }
+
+    //---------- modify start ----------
+
+    @Override
+    public void setData(List<? extends T> list)
+    {
+        mSource.setData(list);
+    }
+
+    @Override
+    public boolean addData(T data)
+    {
+        return mSource.addData(data);
+    }
+
+    @Override
+    public boolean addData(List<? extends T> list)
+    {
+        return mSource.addData(list);
+    }
+
+    @Override
+    public void addData(int index, T data)
+    {
+        if (index < 0 || index > size())
+            return;
+
+        mSource.addData(toSourceInsertIndex(index), data);
+    }
+
+    @Override
+    public boolean addData(int index, List<? extends T> list)
+    {
+        if (index < 0 || index > size())
+            return false;
+
+        return mSource.addData(toSourceInsertIndex(index), list);
+    }
+
+    @Override
+    public boolean removeData(T data)
+    {
+        final int index = indexOf(data);
+        return removeData(index) != null;
+    }
+
+    /**
+     * 删除index位置的数据，分组头不能删除，返回null
+     *
+     * @param index
+     * @return
+     */
+    @Override
+    public T removeData(int index)
+    {
+        final int sourceIndex = getSourceIndex(index);
+        if (sourceIndex < 0)
+            return null;
+
+        return mSource.removeData(sourceIndex);
+    }
+
+    /**
+     * 更新index位置的数据，分组头不能更新
+     *
+     * @param index
+     * @param data
+     */
+    @Override
+    public void updateData(int index, T data)
+    {
+        final int sourceIndex = getSourceIndex(index);
+        if (sourceIndex < 0)
+            return;
+
+        mSource.updateData(sourceIndex, data);
+    }
+
+    /**
+     * 删除范围内的数据，范围内的分组头会在分组为空的时候自动删除
+     *
+     * @param index
+     * @param count
+     * @return
+     */
+    @Override
+    public List<T> removeData(int index, int count)
+    {
+        if (!isIndexLegal(index) || count <= 0)
+            return new ArrayList<>();
+
+        // 范围内的数据在源数据中是连续的
+        final int end = Math.min(size(), index + count);
+        final int sourceStart = toSourceInsertIndex(index);
+        final int sourceEnd = end >= size() ? mItems.size() : toSourceInsertIndex(end);
+        if (sourceEnd <= sourceStart)
+            return new ArrayList<>();
+
+        return mSource.removeData(sourceStart, sourceEnd - sourceStart);
+    }
+
+    @Override
+    public int removeIf(DataPredicate<T> predicate)
+    {
+        return mSource.removeIf(predicate);
+    }
+
+    /**
+     * 更新index位置开始的数据，分组头的位置会被忽略
+     *
+     * @param index
+     * @param list
+     */
+    @Override
+    public void updateData(int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return;
+
+        if (index < 0 || index + list.size() > size())
+            return;
+
+        final int[] arrSourceIndex = new int[list.size()];
+        for (int i = 0; i < arrSourceIndex.length; i++)
+        {
+            arrSourceIndex[i] = getSourceIndex(index + i);
+        }
+
+        mSource.beginBatch();
+        try
+        {
+            for (int i = 0; i < arrSourceIndex.length; i++)
+            {
+                if (arrSourceIndex[i] >= 0)
+                    mSource.updateData(arrSourceIndex[i], list.get(i));
+            }
+        } finally
+        {
+            mSource.commitBatch();
+        }
+    }
+
+    @Override
+    public void replaceAll(DataTransform<T> operator)
+    {
+        mSource.replaceAll(operator);
+    }
+
+    @Override
+    public boolean moveData(int fromIndex, int toIndex)
+    {
+        final int fromSource = getSourceIndex(fromIndex);
+        final int toSource = getSourceIndex(toIndex);
+        if (fromSource < 0 || toSource < 0)
+            return false;
+
+        return mSource.moveData(fromSource, toSource);
+    }
+
+    //---------- modify end ----------
+
+    @Override
+    public T get(int index)
+    {
+        if (!isIndexLegal(index))
+            return null;
+
+        final int section = findSectionByPosition(index);
+        final int sourceIndex = index - section - 1;
+        if (sourceIndex < getSourceStart(section))
+            return mSections.get(section).mHeader;
+
+        return mItems.get(sourceIndex);
+    }
+
+    @Override
+    public int size()
+    {
+        return mItems.size() + mSections.size();
+    }
+
+    @Override
+    public int indexOf(T data)
+    {
+        final int index = mItems.indexOf(data);
+        if (index >= 0)
+            return index + findSectionBySource(index) + 1;
+
+        for (int i = 0; i < mSections.size(); i++)
+        {
+            final T header = mSections.get(i).mHeader;
+            if (header != null && header.equals(data))
+                return getPositionForSection(i);
+        }
+        return -1;
+    }
+
+    @Override
+    public List<T> getData()
+    {
+        return mDataView;
+    }
+
+    private static final class Section<T>
+    {
+        final Object mKey;
+        final T mHeader;
+        int mCount;
+
+        Section(Object key, T header, int count)
+        {
+            mKey = key;
+            mHeader = header;
+            mCount = count;
+        }
+    }
+
+    /**
+     * 分组
+     *
+     * @param <T>
+     */
+    public interface SectionProvider<T>
+    {
+        /**
+         * 返回数据所在的分组，通过equals判断是否是同一个分组
+         *
+         * @param data
+         * @return
+         */
+        Object getSection(T data);
+
+        /**
+         * 创建分组头
+         *
+         * @param section
+         * @return
+         */
+        T createHeader(Object section);
+    }
+}
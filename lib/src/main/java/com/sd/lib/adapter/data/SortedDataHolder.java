@@ -0,0 +1,522 @@
+package com.sd.lib.adapter.data;
+
+import com.sd.lib.adapter.data.diff.DiffCallback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 保持数据有序的{@link DataHolder}，通过{@link Comparator}排序，通过{@link DiffCallback}判断是否是同一个数据
+ * <p>
+ * 添加数据的时候二分查找插入的位置，已经存在的数据会被更新，更新后位置发生变化的数据会通知移动和变化，
+ * {@link #setData(List)}排序后和旧数据比较，只通知发生变化的部分
+ * <p>
+ * 位置由排序决定，在指定位置添加的数据会被添加到排序的位置，移动数据会被忽略，
+ * 设置的{@link DataTransform}在排序之前应用，排序按转换后的数据进行
+ * <p>
+ * 添加的时候只在排序相等的数据中查找已经存在的数据，如果数据的排序依据发生了变化，请用{@link #updateSortKey(Object)}更新
+ *
+ * @param <T>
+ */
+public class SortedDataHolder<T> extends ListDataHolder<T>
+{
+    private final Comparator<? super T> mComparator;
+    private DiffCallback<T> mCallback;
+    private DataTransform<T> mTransform;
+
+    /**
+     * @param comparator 排序规则
+     * @param callback   判断是否是同一个数据以及内容是否相同
+     */
+    public SortedDataHolder(Comparator<? super T> comparator, DiffCallback<T> callback)
+    {
+        if (comparator == null)
+            throw new NullPointerException("comparator is null");
+        if (callback == null)
+            throw new NullPointerException("callback is null");
+
+        mComparator = comparator;
+        mCallback = callback;
+        super.setDiffCallback(callback);
+    }
+
+    @Override
+    public void setDiffCallback(DiffCallback<T> callback)
+    {
+        if (callback == null)
+            throw new NullPointerException("callback is null");
+
+        mCallback = callback;
+        super.setDiffCallback(callback);
+    }
+
+    /**
+     * 设置转换器，只对之后添加的数据生效，转换在排序之前进行
+     *
+     * @param transform
+     */
+    @Override
+    public void setDataTransform(DataTransform<T> transform)
+    {
+        // 不交给父类，父类在插入之后才转换，会打乱排序
+        mTransform = transform;
+    }
+
+    private T prepareData(T data)
+    {
+        if (mTransform == null)
+            return data;
+
+        final T transform = mTransform.transform(data);
+        return transform != null ? transform : data;
+    }
+
+    /**
+     * 去掉null并转换
+     *
+     * @param list
+     * @return 新的集合
+     */
+    private List<T> prepareList(List<? extends T> list)
+    {
+        final List<T> listResult = list == null ? new ArrayList<T>() : new ArrayList<T>(list);
+        listResult.removeAll(Collections.singleton(null));
+        if (mTransform == null || listResult.isEmpty())
+            return listResult;
+
+        if (mTransform instanceof BulkDataTransform)
+        {
+            final List<T> listTransform = ((BulkDataTransform<T>) mTransform).transformList(Collections.unmodifiableList(listResult));
+            if (listTransform == null || listTransform.size() != listResult.size())
+                throw new IllegalStateException("BulkDataTransform.transformList() must return a list with the same size as the source");
+
+            for (int i = 0; i < listResult.size(); i++)
+            {
+                final T item = listTransform.get(i);
+                if (item != null)
+                    listResult.set(i, item);
+            }
+        } else
+        {
+            for (int i = 0; i < listResult.size(); i++)
+            {
+                listResult.set(i, prepareData(listResult.get(i)));
+            }
+        }
+        return listResult;
+    }
+
+    /**
+     * 返回data应该插入的位置，排序相等的数据插入到最后
+     *
+     * @param list
+     * @param data
+     * @return
+     */
+    private int insertIndex(List<T> list, T data)
+    {
+        int low = 0;
+        int high = list.size();
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (mComparator.compare(list.get(mid), data) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * 返回第一个排序不小于data的位置
+     *
+     * @param list
+     * @param data
+     * @return
+     */
+    private int lowerIndex(List<T> list, T data)
+    {
+        int low = 0;
+        int high = list.size();
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (mComparator.compare(list.get(mid), data) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * 在排序相等的范围内查找和data是同一个数据的位置，O(log n + 相等的数量)
+     *
+     * @param data
+     * @return
+     */
+    private int indexOfSame(T data)
+    {
+        final List<T> list = getStorage();
+        for (int i = lowerIndex(list, data); i < list.size(); i++)
+        {
+            final T item = list.get(i);
+            if (mComparator.compare(item, data) != 0)
+                break;
+            if (mCallback.areItemsTheSame(item, data))
+                return i;
+        }
+        return -1;
+    }
+
+    //---------- modify start ----------
+
+    @Override
+    public void setData(List<? extends T> list)
+    {
+        final List<T> listSort = prepareList(list);
+        Collections.sort(listSort, mComparator);
+        super.setData(listSort);
+    }
+
+    /**
+     * 添加数据，如果排序相等的数据中已经存在同一个数据则更新，O(log n)
+     *
+     * @param data
+     * @return
+     */
+    @Override
+    public boolean addData(T data)
+    {
+        if (data == null)
+            return false;
+
+        data = prepareData(data);
+        final int index = indexOfSame(data);
+        if (index >= 0)
+        {
+            setSortedData(index, data);
+            return true;
+        }
+
+        super.addData(insertIndex(getStorage(), data), data);
+        return true;
+    }
+
+    /**
+     * 数据的排序依据发生变化之后调用，在所有数据中查找同一个数据并更新到新的位置，O(n)，
+     * 不存在的话添加
+     *
+     * @param data
+     * @return true-找到并更新了已经存在的数据
+     */
+    public boolean updateSortKey(T data)
+    {
+        if (data == null)
+            return false;
+
+        data = prepareData(data);
+        final List<T> list = getStorage();
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (mCallback.areItemsTheSame(list.get(i), data))
+            {
+                setSortedData(i, data);
+                return true;
+            }
+        }
+
+        super.addData(insertIndex(list, data), data);
+        return false;
+    }
+
+    /**
+     * 把新数据排序后和已有的数据合并，O(n + k log k)，合并的时候只在排序相等的数据中查找已经存在的数据并更新，
+     * 如果数据的排序依据发生了变化，请用{@link #addData(Object)}或者{@link #updateData(int, Object)}更新
+     *
+     * @param list
+     * @return
+     */
+    @Override
+    public boolean addData(List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return false;
+
+        final List<T> listAdd = prepareList(list);
+        if (listAdd.isEmpty())
+            return false;
+        Collections.sort(listAdd, mComparator);
+
+        final List<T> listOld = getStorage();
+        final int oldSize = listOld.size();
+        final List<T> listMerge = new ArrayList<>(oldSize + listAdd.size());
+        // 合并后每个位置的来源，0-原数据，1-新增，2-更新
+        final byte[] arrFlag = new byte[oldSize + listAdd.size()];
+
+        int i = 0;
+        int j = 0;
+        while (i < oldSize || j < listAdd.size())
+        {
+            if (j >= listAdd.size())
+            {
+                listMerge.add(listOld.get(i++));
+                continue;
+            }
+
+            final T add = listAdd.get(j);
+            final int compare = i < oldSize ? mComparator.compare(listOld.get(i), add) : 1;
+            if (compare < 0)
+            {
+                listMerge.add(listOld.get(i++));
+            } else if (compare > 0)
+            {
+                arrFlag[listMerge.size()] = 1;
+                listMerge.add(add);
+                j++;
+            } else
+            {
+                // 排序相等的一段原数据和新数据，新数据如果在这段原数据中存在则替换，否则添加到这段的末尾
+                int oldEnd = i;
+                while (oldEnd < oldSize && mComparator.compare(listOld.get(oldEnd), add) == 0)
+                {
+                    oldEnd++;
+                }
+                int addEnd = j;
+                while (addEnd < listAdd.size() && mComparator.compare(listAdd.get(addEnd), add) == 0)
+                {
+                    addEnd++;
+                }
+
+                final int runStart = listMerge.size();
+                listMerge.addAll(listOld.subList(i, oldEnd));
+                for (int q = j; q < addEnd; q++)
+                {
+                    final T item = listAdd.get(q);
+                    int same = -1;
+                    for (int k = i; k < oldEnd; k++)
+                    {
+                        if (mCallback.areItemsTheSame(listOld.get(k), item))
+                        {
+                            same = k;
+                            break;
+                        }
+                    }
+
+                    if (same < 0)
+                    {
+                        arrFlag[listMerge.size()] = 1;
+                        listMerge.add(item);
+                    } else
+                    {
+                        final int position = runStart + same - i;
+                        if (!mCallback.areContentsTheSame(listOld.get(same), item))
+                            arrFlag[position] = 2;
+                        listMerge.set(position, item);
+                    }
+                }
+                i = oldEnd;
+                j = addEnd;
+            }
+        }
+
+        listOld.clear();
+        listOld.addAll(listMerge);
+
+        // 按合并后的位置从前往后通知，通知到某个位置的时候，它前面的数据和最终结果一致
+        final int size = listMerge.size();
+        int start = 0;
+        while (start < size)
+        {
+            final byte flag = arrFlag[start];
+            int end = start + 1;
+            while (end < size && arrFlag[end] == flag)
+            {
+                end++;
+            }
+
+            final int count = end - start;
+            if (flag == 1)
+            {
+                getNotifier().onDataAdded(start, obtainPayload(listOld, start, count));
+            } else if (flag == 2)
+            {
+                if (count == 1)
+                    getNotifier().onDataChanged(start, listOld.get(start));
+                else
+                    getNotifier().onDataRangeChanged(start, obtainPayload(listOld, start, count));
+            }
+            start = end;
+        }
+        return true;
+    }
+
+    /**
+     * 位置由排序决定，index被忽略，等同于{@link #addData(Object)}
+     *
+     * @param index
+     * @param data
+     */
+    @Override
+    public void addData(int index, T data)
+    {
+        addData(data);
+    }
+
+    /**
+     * 位置由排序决定，index被忽略，等同于{@link #addData(List)}
+     *
+     * @param index
+     * @param list
+     * @return
+     */
+    @Override
+    public boolean addData(int index, List<? extends T> list)
+    {
+        return addData(list);
+    }
+
+    /**
+     * 位置由排序决定，不支持移动，总是返回false
+     *
+     * @param fromIndex
+     * @param toIndex
+     * @return
+     */
+    @Override
+    public boolean moveData(int fromIndex, int toIndex)
+    {
+        return false;
+    }
+
+    /**
+     * 更新index位置的数据，如果位置发生变化会通知移动，内容发生变化会通知变化
+     *
+     * @param index
+     * @param data
+     */
+    @Override
+    public void updateData(int index, T data)
+    {
+        if (data == null || !isIndexLegal(index))
+            return;
+
+        setSortedData(index, prepareData(data));
+    }
+
+    /**
+     * 用已经转换过的data替换index位置的数据，并移动到排序的位置
+     *
+     * @param index
+     * @param data
+     */
+    private void setSortedData(int index, T data)
+    {
+        final List<T> list = getStorage();
+        final T old = list.remove(index);
+        final int toIndex = insertIndex(list, data);
+        list.add(toIndex, data);
+
+        if (toIndex != index)
+            getNotifier().onDataMoved(index, toIndex, old);
+
+        if (!mCallback.areContentsTheSame(old, data))
+            getNotifier().onDataChanged(toIndex, data);
+    }
+
+    /**
+     * 更新index位置开始的数据，每个数据按排序移动到新的位置
+     *
+     * @param index
+     * @param list
+     */
+    @Override
+    public void updateData(int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return;
+
+        if (index < 0 || index + list.size() > size())
+            return;
+
+        // 更新的过程中位置会变化，先记下被更新的数据
+        final List<T> listOld = new ArrayList<>(getStorage().subList(index, index + list.size()));
+        beginBatch();
+        try
+        {
+            for (int i = 0; i < listOld.size(); i++)
+            {
+                final int position = indexOfIdentity(listOld.get(i));
+                if (position >= 0)
+                    updateData(position, list.get(i));
+            }
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void replaceAll(DataTransform<T> operator)
+    {
+        if (operator == null)
+            return;
+
+        super.replaceAll(operator);
+
+        // 转换后排序可能被打乱，重新排序并比较，通知移动
+        final List<T> list = getStorage();
+        for (int i = 1; i < list.size(); i++)
+        {
+            if (mComparator.compare(list.get(i - 1), list.get(i)) > 0)
+            {
+                setData(new ArrayList<>(list));
+                break;
+            }
+        }
+    }
+
+    //---------- modify end ----------
+
+    private int indexOfIdentity(T data)
+    {
+        final List<T> list = getStorage();
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (list.get(i) == data)
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(T data)
+    {
+        if (data == null)
+            return -1;
+
+        final List<T> list = getStorage();
+        for (int i = lowerIndex(list, data); i < list.size(); i++)
+        {
+            final T item = list.get(i);
+            if (mComparator.compare(item, data) != 0)
+                break;
+            if (data.equals(item))
+                return i;
+        }
+        return super.indexOf(data);
+    }
+
+    /**
+     * 返回排序规则
+     *
+     * @return
+     */
+    public Comparator<? super T> getComparator()
+    {
+        return mComparator;
+    }
+}
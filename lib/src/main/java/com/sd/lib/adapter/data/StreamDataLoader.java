@@ -0,0 +1,490 @@
+package com.sd.lib.adapter.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把持续产生的数据流分块添加到{@link DataHolder}，例如日志和流式返回的搜索结果
+ * <p>
+ * 数据源在任意线程通过{@link Subscriber#onNext(Object)}发送数据，数据先放入无锁队列，然后通过{@link Scheduler}
+ * 在UI线程每次取出一块调用{@link DataHolder#addData(List)}，每块只通知一次添加；
+ * 块的大小根据添加数据的平均耗时和每次的时间预算调整，
+ * 并且只向数据源请求最多两块的数据，UI线程处理不过来的时候数据源不会收到新的请求
+ * <p>
+ * 接口和Reactive Streams的Publisher/Subscriber/Subscription一致，可以很容易地适配其他数据流的实现
+ *
+ * @param <T>
+ */
+public class StreamDataLoader<T>
+{
+    /**
+     * 默认每次添加数据的时间预算，纳秒
+     */
+    public static final long DEFAULT_FRAME_BUDGET = 4000000L;
+
+    private final DataHolder<T> mHolder;
+    private final Scheduler mScheduler;
+
+    private long mFrameBudget = DEFAULT_FRAME_BUDGET;
+    private int mMinChunkSize = 16;
+    private int mMaxChunkSize = 1024;
+    private int mChunkSize = 64;
+    /**
+     * 添加一个数据的平均耗时，纳秒
+     */
+    private long mCostPerItem;
+
+    private final Queue<T> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mBufferedCount = new AtomicInteger();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    private volatile StreamSubscriber mSubscriber;
+    private Callback mCallback;
+
+    /**
+     * 是否正在添加数据，同步执行的scheduler在添加过程中再次调度的时候，由外层循环继续添加，不递归
+     */
+    private boolean mDraining;
+    private boolean mDrainAgain;
+
+    private final Runnable mDrainTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mScheduled.set(false);
+            if (mDraining)
+            {
+                mDrainAgain = true;
+                return;
+            }
+
+            mDraining = true;
+            try
+            {
+                do
+                {
+                    mDrainAgain = false;
+                    drain();
+                } while (mDrainAgain);
+            } finally
+            {
+                mDraining = false;
+            }
+        }
+    };
+
+    /**
+     * 在主线程添加数据
+     *
+     * @param holder
+     */
+    public StreamDataLoader(DataHolder<T> holder)
+    {
+        this(holder, MainThreadScheduler.getInstance());
+    }
+
+    /**
+     * @param holder    要添加数据的holder
+     * @param scheduler 添加数据的调度器，每次调度添加一块数据
+     */
+    public StreamDataLoader(DataHolder<T> holder, Scheduler scheduler)
+    {
+        if (holder == null)
+            throw new NullPointerException("holder is null");
+        if (scheduler == null)
+            throw new NullPointerException("scheduler is null");
+
+        mHolder = holder;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * 设置每次添加数据的时间预算，默认{@link #DEFAULT_FRAME_BUDGET}
+     *
+     * @param nanos
+     */
+    public void setFrameBudget(long nanos)
+    {
+        if (nanos <= 0)
+            throw new IllegalArgumentException("nanos must be greater than 0");
+        mFrameBudget = nanos;
+    }
+
+    /**
+     * 设置每块数据数量的范围
+     *
+     * @param min
+     * @param max
+     */
+    public void setChunkSizeRange(int min, int max)
+    {
+        if (min <= 0 || max < min)
+            throw new IllegalArgumentException("illegal chunk size range:" + min + "," + max);
+
+        mMinChunkSize = min;
+        mMaxChunkSize = max;
+        mChunkSize = Math.max(min, Math.min(max, mChunkSize));
+    }
+
+    /**
+     * 返回当前每块数据的数量
+     *
+     * @return
+     */
+    public int getChunkSize()
+    {
+        return mChunkSize;
+    }
+
+    /**
+     * 设置数据流结束的回调，在scheduler的线程中触发
+     *
+     * @param callback
+     */
+    public void setCallback(Callback callback)
+    {
+        mCallback = callback;
+    }
+
+    /**
+     * 订阅数据流，会取消之前的订阅
+     *
+     * @param publisher
+     */
+    public void subscribe(Publisher<? extends T> publisher)
+    {
+        if (publisher == null)
+            throw new NullPointerException("publisher is null");
+
+        cancel();
+        final StreamSubscriber subscriber = new StreamSubscriber();
+        mSubscriber = subscriber;
+        ((Publisher<T>) publisher).subscribe(subscriber);
+    }
+
+    /**
+     * 订阅一个迭代器，在scheduler的线程中按块读取
+     *
+     * @param iterator
+     */
+    public void subscribe(Iterator<? extends T> iterator)
+    {
+        subscribe(fromIterator(iterator));
+    }
+
+    /**
+     * 取消订阅，丢弃还未添加的数据
+     */
+    public void cancel()
+    {
+        final StreamSubscriber subscriber = mSubscriber;
+        mSubscriber = null;
+        if (subscriber != null)
+            subscriber.cancel();
+
+        mQueue.clear();
+        mBufferedCount.set(0);
+    }
+
+    /**
+     * 返回已经收到还未添加的数据数量
+     *
+     * @return
+     */
+    public int getBufferedCount()
+    {
+        return mBufferedCount.get();
+    }
+
+    private void schedule()
+    {
+        if (mScheduled.compareAndSet(false, true))
+            mScheduler.schedule(mDrainTask);
+    }
+
+    /**
+     * 添加一块数据，然后向数据源请求更多数据
+     */
+    private void drain()
+    {
+        final StreamSubscriber subscriber = mSubscriber;
+        if (subscriber == null)
+            return;
+
+        final int chunkSize = mChunkSize;
+        final List<T> list = new ArrayList<>(Math.min(chunkSize, Math.max(mBufferedCount.get(), 1)));
+        T item;
+        while (list.size() < chunkSize && (item = mQueue.poll()) != null)
+        {
+            list.add(item);
+        }
+
+        if (!list.isEmpty())
+        {
+            mBufferedCount.addAndGet(-list.size());
+
+            final long start = System.nanoTime();
+            mHolder.addData(list);
+            adjustChunkSize(list.size(), System.nanoTime() - start);
+        }
+
+        // 先读取结束标记，结束之前发送的数据一定已经在队列中
+        final boolean done = subscriber.mDone;
+        if (!mQueue.isEmpty())
+        {
+            schedule();
+        } else if (done)
+        {
+            if (mSubscriber == subscriber)
+            {
+                mSubscriber = null;
+                if (mCallback != null)
+                {
+                    if (subscriber.mError != null)
+                        mCallback.onError(subscriber.mError);
+                    else
+                        mCallback.onComplete();
+                }
+            }
+            return;
+        }
+
+        subscriber.requestMore();
+    }
+
+    private void adjustChunkSize(int count, long cost)
+    {
+        final long costPerItem = Math.max(1, cost / count);
+        mCostPerItem = mCostPerItem == 0 ? costPerItem : (mCostPerItem * 3 + costPerItem) / 4;
+
+        final long size = mFrameBudget / mCostPerItem;
+        mChunkSize = (int) Math.max(mMinChunkSize, Math.min(mMaxChunkSize, size));
+    }
+
+    private final class StreamSubscriber implements Subscriber<T>
+    {
+        private volatile Subscription mSubscription;
+        /**
+         * 已经请求还未收到的数据数量
+         */
+        private final AtomicLong mOutstanding = new AtomicLong();
+        private volatile boolean mCancelled;
+        private volatile boolean mDone;
+        private volatile Throwable mError;
+
+        @Override
+        public void onSubscribe(Subscription subscription)
+        {
+            if (mCancelled)
+            {
+                subscription.cancel();
+                return;
+            }
+
+            mSubscription = subscription;
+            // 在scheduler的线程中发起第一次请求
+            schedule();
+        }
+
+        @Override
+        public void onNext(T item)
+        {
+            mOutstanding.decrementAndGet();
+            if (mCancelled || item == null)
+                return;
+
+            mQueue.offer(item);
+            mBufferedCount.incrementAndGet();
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            mError = throwable;
+            mDone = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            mDone = true;
+            schedule();
+        }
+
+        /**
+         * 保持已经收到和已经请求的数据最多为两块
+         */
+        void requestMore()
+        {
+            final Subscription subscription = mSubscription;
+            if (subscription == null || mCancelled || mDone)
+                return;
+
+            final long demand = 2L * mChunkSize - mOutstanding.get() - mBufferedCount.get();
+            if (demand > 0)
+            {
+                mOutstanding.addAndGet(demand);
+                subscription.request(demand);
+            }
+        }
+
+        void cancel()
+        {
+            mCancelled = true;
+            final Subscription subscription = mSubscription;
+            if (subscription != null)
+                subscription.cancel();
+        }
+    }
+
+    /**
+     * 返回按请求的数量从迭代器读取数据的数据源，读取发生在调用{@link Subscription#request(long)}的线程
+     *
+     * @param iterator
+     * @param <T>
+     * @return
+     */
+    public static <T> Publisher<T> fromIterator(final Iterator<? extends T> iterator)
+    {
+        if (iterator == null)
+            throw new NullPointerException("iterator is null");
+
+        return new Publisher<T>()
+        {
+            @Override
+            public void subscribe(final Subscriber<? super T> subscriber)
+            {
+                subscriber.onSubscribe(new Subscription()
+                {
+                    private boolean mFinish;
+
+                    @Override
+                    public void request(long n)
+                    {
+                        if (mFinish)
+                            return;
+
+                        try
+                        {
+                            for (long i = 0; i < n && iterator.hasNext(); i++)
+                            {
+                                subscriber.onNext(iterator.next());
+                            }
+                        } catch (RuntimeException e)
+                        {
+                            mFinish = true;
+                            subscriber.onError(e);
+                            return;
+                        }
+
+                        if (!iterator.hasNext())
+                        {
+                            mFinish = true;
+                            subscriber.onComplete();
+                        }
+                    }
+
+                    @Override
+                    public void cancel()
+                    {
+                        mFinish = true;
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 数据源
+     *
+     * @param <T>
+     */
+    public interface Publisher<T>
+    {
+        /**
+         * 订阅数据
+         *
+         * @param subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * 数据的接收者
+     *
+     * @param <T>
+     */
+    public interface Subscriber<T>
+    {
+        /**
+         * 订阅成功，接收者通过subscription请求数据
+         *
+         * @param subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * 收到数据，数量不会超过请求的数量
+         *
+         * @param item
+         */
+        void onNext(T item);
+
+        /**
+         * 数据流出错结束
+         *
+         * @param throwable
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * 数据流正常结束
+         */
+        void onComplete();
+    }
+
+    /**
+     * 订阅关系
+     */
+    public interface Subscription
+    {
+        /**
+         * 请求n个数据
+         *
+         * @param n
+         */
+        void request(long n);
+
+        /**
+         * 取消订阅
+         */
+        void cancel();
+    }
+
+    /**
+     * 数据流结束的回调
+     */
+    public interface Callback
+    {
+        /**
+         * 所有数据都已经添加
+         */
+        void onComplete();
+
+        /**
+         * 数据流出错，出错前收到的数据都已经添加
+         *
+         * @param throwable
+         */
+        void onError(Throwable throwable);
+    }
+}
@@ -0,0 +1,968 @@
+package com.sd.lib.adapter.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 可以展开和收起的树形{@link DataHolder}，数据是所有可见节点按先序遍历展开后的列表，根节点总是可见的
+ * <p>
+ * 可见节点按顺序保存在带子树数量的平衡树(treap)中，{@link #get(int)}和{@link #indexOfNode(Node)}都是O(log n)，
+ * 展开和收起节点的时候整段插入或者拆分出去，只通知一次{@link DataChangeCallback#onDataAdded(int, List)}或者删除
+ * <p>
+ * 位置的移动会改变树的结构，所以不支持{@link #moveData(int, int)}
+ *
+ * @param <T>
+ */
+public class TreeDataHolder<T> extends AbstractDataHolder<T>
+{
+    private final List<Node<T>> mRoots = new ArrayList<>();
+    private final List<Node<T>> mRootsView = Collections.unmodifiableList(mRoots);
+    /**
+     * 数据对应的节点，用来快速查找数据的位置
+     */
+    private final Map<T, Node<T>> mMapNode = new IdentityHashMap<>();
+
+    private Entry mRoot;
+    private final Random mRandom = new Random();
+    private final Entry[] mSplit = new Entry[2];
+
+    private final List<T> mDataView = new AbstractList<T>()
+    {
+        @Override
+        public T get(int index)
+        {
+            return TreeDataHolder.this.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return TreeDataHolder.this.size();
+        }
+    };
+
+    /**
+     * 返回根节点
+     *
+     * @return
+     */
+    public List<Node<T>> getRoots()
+    {
+        return mRootsView;
+    }
+
+    /**
+     * 返回position位置的节点
+     *
+     * @param position
+     * @return
+     */
+    public Node<T> getNode(int position)
+    {
+        if (!isIndexLegal(position))
+            return null;
+
+        Entry entry = mRoot;
+        while (true)
+        {
+            final int leftSize = size(entry.mLeft);
+            if (position < leftSize)
+            {
+                entry = entry.mLeft;
+            } else if (position == leftSize)
+            {
+                return (Node<T>) entry.mNode;
+            } else
+            {
+                position -= leftSize + 1;
+                entry = entry.mRight;
+            }
+        }
+    }
+
+    /**
+     * 返回节点的位置
+     *
+     * @param node
+     * @return -1表示节点不可见或者不在当前holder中
+     */
+    public int indexOfNode(Node<T> node)
+    {
+        if (node == null || node.mEntry == null || node.mHolder != this)
+            return -1;
+
+        Entry entry = node.mEntry;
+        int index = size(entry.mLeft);
+        while (entry.mParent != null)
+        {
+            final Entry parent = entry.mParent;
+            if (parent.mRight == entry)
+                index += size(parent.mLeft) + 1;
+            entry = parent;
+        }
+        return index;
+    }
+
+    /**
+     * 在parent的子节点末尾添加节点
+     *
+     * @param parent null-添加根节点
+     * @param data
+     * @return
+     */
+    public Node<T> addNode(Node<T> parent, T data)
+    {
+        final List<Node<T>> list = addNodes(parent, getChildCount(parent), Collections.singletonList(data));
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * 在parent的子节点index位置添加节点
+     *
+     * @param parent null-添加根节点
+     * @param index
+     * @param data
+     * @return
+     */
+    public Node<T> addNode(Node<T> parent, int index, T data)
+    {
+        final List<Node<T>> list = addNodes(parent, index, Collections.singletonList(data));
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * 在parent的子节点末尾添加多个节点
+     *
+     * @param parent null-添加根节点
+     * @param list
+     * @return
+     */
+    public List<Node<T>> addNodes(Node<T> parent, List<? extends T> list)
+    {
+        return addNodes(parent, getChildCount(parent), list);
+    }
+
+    /**
+     * 在parent的子节点index位置添加多个节点，如果parent可见并且已经展开，只通知一次添加
+     *
+     * @param parent null-添加根节点
+     * @param index
+     * @param list
+     * @return 添加的节点
+     */
+    public List<Node<T>> addNodes(Node<T> parent, int index, List<? extends T> list)
+    {
+        checkNode(parent);
+        final List<Node<T>> siblings = parent == null ? mRoots : parent.mChildren;
+        if (index < 0 || index > siblings.size())
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + siblings.size());
+
+        final List<Node<T>> listNode = new ArrayList<>();
+        if (list == null || list.isEmpty())
+            return listNode;
+
+        final List<T> listData = transformData(list);
+        for (T item : listData)
+        {
+            if (item != null)
+                listNode.add(new Node<T>(this, parent, item));
+        }
+        if (listNode.isEmpty())
+            return listNode;
+
+        // 先计算插入的位置，再修改子节点
+        final boolean visible = parent == null || (parent.mEntry != null && parent.mExpanded);
+        final int position = visible ? getChildPosition(parent, index) : -1;
+
+        siblings.addAll(index, listNode);
+        for (Node<T> item : listNode)
+        {
+            mMapNode.put(item.mData, item);
+        }
+
+        if (visible)
+        {
+            insertEntries(position, listNode);
+            getNotifier().onDataAdded(position, toDataList(listNode));
+        }
+        return listNode;
+    }
+
+    /**
+     * 移除节点和它的所有子节点
+     *
+     * @param node
+     * @return
+     */
+    public boolean removeNode(Node<T> node)
+    {
+        if (node == null || node.mHolder != this)
+            return false;
+
+        final int position = indexOfNode(node);
+        final List<Node<T>> listVisible = position >= 0 ? collectVisible(node, true) : null;
+
+        final List<Node<T>> siblings = node.mParent == null ? mRoots : node.mParent.mChildren;
+        siblings.remove(node);
+        detach(node);
+
+        if (listVisible != null)
+        {
+            removeEntries(position, listVisible.size());
+            notifyRemoved(position, listVisible);
+        }
+        return true;
+    }
+
+    /**
+     * 展开节点，如果节点可见，子节点中可见的部分只通知一次添加
+     *
+     * @param node
+     */
+    public void expand(Node<T> node)
+    {
+        checkNode(node);
+        if (node == null || node.mExpanded)
+            return;
+
+        node.mExpanded = true;
+        if (node.mEntry == null)
+            return;
+
+        final List<Node<T>> listVisible = collectVisible(node, false);
+        if (listVisible.isEmpty())
+            return;
+
+        final int position = indexOfNode(node) + 1;
+        insertEntries(position, listVisible);
+        getNotifier().onDataAdded(position, toDataList(listVisible));
+    }
+
+    /**
+     * 收起节点，如果节点可见，子节点中可见的部分只通知一次删除
+     *
+     * @param node
+     */
+    public void collapse(Node<T> node)
+    {
+        checkNode(node);
+        if (node == null || !node.mExpanded)
+            return;
+
+        final List<Node<T>> listVisible = node.mEntry == null ? null : collectVisible(node, false);
+        node.mExpanded = false;
+        if (listVisible == null || listVisible.isEmpty())
+            return;
+
+        final int position = indexOfNode(node) + 1;
+        removeEntries(position, listVisible.size());
+        notifyRemoved(position, listVisible);
+    }
+
+    /**
+     * 切换节点的展开状态
+     *
+     * @param node
+     */
+    public void toggle(Node<T> node)
+    {
+        if (node == null)
+            return;
+
+        if (node.mExpanded)
+            collapse(node);
+        else
+            expand(node);
+    }
+
+    /**
+     * 更新节点的数据，节点可见的话会通知变化
+     *
+     * @param node
+     * @param data
+     */
+    public void updateNode(Node<T> node, T data)
+    {
+        checkNode(node);
+        if (node == null || data == null)
+            return;
+
+        data = transformData(data);
+        if (mMapNode.get(node.mData) == node)
+            mMapNode.remove(node.mData);
+        node.mData = data;
+        mMapNode.put(data, node);
+
+        final int position = indexOfNode(node);
+        if (position >= 0)
+            getNotifier().onDataChanged(position, data);
+    }
+
+    private void checkNode(Node<T> node)
+    {
+        if (node != null && node.mHolder != this)
+            throw new IllegalArgumentException("node is not in this holder");
+    }
+
+    private int getChildCount(Node<T> parent)
+    {
+        return parent == null ? mRoots.size() : parent.mChildren.size();
+    }
+
+    /**
+     * 返回可见并且展开的parent的第index个子节点应该插入的位置
+     *
+     * @param parent
+     * @param index
+     * @return
+     */
+    private int getChildPosition(Node<T> parent, int index)
+    {
+        final List<Node<T>> siblings = parent == null ? mRoots : parent.mChildren;
+        if (index < siblings.size())
+            return indexOfNode(siblings.get(index));
+
+        if (parent == null)
+            return size();
+
+        // 插入到parent最后一个可见的子孙节点后面
+        Node<T> last = parent;
+        while (last.mExpanded && !last.mChildren.isEmpty())
+        {
+            last = last.mChildren.get(last.mChildren.size() - 1);
+        }
+        return indexOfNode(last) + 1;
+    }
+
+    /**
+     * 按先序遍历返回node下可见的节点
+     *
+     * @param node
+     * @param includeSelf 是否包含node
+     * @return
+     */
+    private List<Node<T>> collectVisible(Node<T> node, boolean includeSelf)
+    {
+        final List<Node<T>> list = new ArrayList<>();
+        if (includeSelf)
+            list.add(node);
+        if (node.mExpanded)
+            collectVisibleChildren(node, list);
+        return list;
+    }
+
+    private static <T> void collectVisibleChildren(Node<T> node, List<Node<T>> list)
+    {
+        for (Node<T> item : node.mChildren)
+        {
+            list.add(item);
+            if (item.mExpanded)
+                collectVisibleChildren(item, list);
+        }
+    }
+
+    /**
+     * 把node和它的子孙节点从当前holder中移除
+     *
+     * @param node
+     */
+    private void detach(Node<T> node)
+    {
+        if (mMapNode.get(node.mData) == node)
+            mMapNode.remove(node.mData);
+        node.mHolder = null;
+        node.mEntry = null;
+        for (Node<T> item : node.mChildren)
+        {
+            detach(item);
+        }
+    }
+
+    private List<T> toDataList(List<Node<T>> listNode)
+    {
+        final List<T> list = new ArrayList<>(listNode.size());
+        for (Node<T> item : listNode)
+        {
+            list.add(item.mData);
+        }
+        return list;
+    }
+
+    private void notifyRemoved(int position, List<Node<T>> listNode)
+    {
+        if (listNode.size() == 1)
+            getNotifier().onDataRemoved(position, listNode.get(0).mData);
+        else
+            getNotifier().onDataRangeRemoved(position, toDataList(listNode));
+    }
+
+    //---------- treap start ----------
+
+    private static int size(Entry entry)
+    {
+        return entry == null ? 0 : entry.mSize;
+    }
+
+    private static Entry update(Entry entry)
+    {
+        entry.mSize = 1 + size(entry.mLeft) + size(entry.mRight);
+        if (entry.mLeft != null)
+            entry.mLeft.mParent = entry;
+        if (entry.mRight != null)
+            entry.mRight.mParent = entry;
+        return entry;
+    }
+
+    private static Entry merge(Entry left, Entry right)
+    {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+
+        if (left.mPriority > right.mPriority)
+        {
+            left.mRight = merge(left.mRight, right);
+            return update(left);
+        } else
+        {
+            right.mLeft = merge(left, right.mLeft);
+            return update(right);
+        }
+    }
+
+    /**
+     * 把entry拆分成前count个和剩下的，结果保存在out中
+     *
+     * @param entry
+     * @param count
+     * @param out
+     */
+    private static void split(Entry entry, int count, Entry[] out)
+    {
+        if (entry == null)
+        {
+            out[0] = null;
+            out[1] = null;
+            return;
+        }
+
+        final int leftSize = size(entry.mLeft);
+        if (count <= leftSize)
+        {
+            split(entry.mLeft, count, out);
+            entry.mLeft = out[1];
+            out[1] = update(entry);
+        } else
+        {
+            split(entry.mRight, count - leftSize - 1, out);
+            entry.mRight = out[0];
+            out[0] = update(entry);
+        }
+    }
+
+    private static void setRoot(Entry entry)
+    {
+        if (entry != null)
+            entry.mParent = null;
+    }
+
+    /**
+     * 按顺序创建节点对应的树，O(n)
+     *
+     * @param listNode
+     * @return
+     */
+    private Entry build(List<Node<T>> listNode)
+    {
+        final Entry[] stack = new Entry[listNode.size()];
+        int top = 0;
+        for (Node<T> item : listNode)
+        {
+            final Entry entry = new Entry(item, mRandom.nextInt());
+            item.mEntry = entry;
+
+            Entry last = null;
+            while (top > 0 && stack[top - 1].mPriority < entry.mPriority)
+            {
+                last = stack[--top];
+            }
+            entry.mLeft = last;
+            if (top > 0)
+                stack[top - 1].mRight = entry;
+            stack[top++] = entry;
+        }
+
+        if (top == 0)
+            return null;
+
+        final Entry root = stack[0];
+        updateAll(root);
+        root.mParent = null;
+        return root;
+    }
+
+    private static void updateAll(Entry entry)
+    {
+        if (entry.mLeft != null)
+            updateAll(entry.mLeft);
+        if (entry.mRight != null)
+            updateAll(entry.mRight);
+        update(entry);
+    }
+
+    private void insertEntries(int position, List<Node<T>> listNode)
+    {
+        final Entry entry = build(listNode);
+        split(mRoot, position, mSplit);
+        final Entry right = mSplit[1];
+        setRoot(mSplit[0]);
+        setRoot(right);
+        mRoot = merge(merge(mSplit[0], entry), right);
+        setRoot(mRoot);
+    }
+
+    private void removeEntries(int position, int count)
+    {
+        split(mRoot, position, mSplit);
+        final Entry left = mSplit[0];
+        setRoot(mSplit[1]);
+        split(mSplit[1], count, mSplit);
+        final Entry right = mSplit[1];
+        setRoot(left);
+        setRoot(right);
+        clearEntries(mSplit[0]);
+        mRoot = merge(left, right);
+        setRoot(mRoot);
+    }
+
+    private static void clearEntries(Entry entry)
+    {
+        if (entry == null)
+            return;
+
+        entry.mNode.mEntry = null;
+        clearEntries(entry.mLeft);
+        clearEntries(entry.mRight);
+    }
+
+    //---------- treap end ----------
+
+    //---------- modify start ----------
+
+    /**
+     * 设置根节点，所有节点都会被替换
+     *
+     * @param list
+     */
+    @Override
+    public void setData(List<? extends T> list)
+    {
+        for (Node<T> item : mRoots)
+        {
+            detach(item);
+        }
+        mRoots.clear();
+        mMapNode.clear();
+
+        if (list != null && !list.isEmpty())
+        {
+            for (T item : transformData(list))
+            {
+                if (item != null)
+                {
+                    final Node<T> node = new Node<T>(this, null, item);
+                    mRoots.add(node);
+                    mMapNode.put(item, node);
+                }
+            }
+        }
+
+        mRoot = build(mRoots);
+        getNotifier().onDataChanged(mDataView);
+    }
+
+    /**
+     * 添加根节点
+     *
+     * @param data
+     * @return
+     */
+    @Override
+    public boolean addData(T data)
+    {
+        return data != null && addNode(null, data) != null;
+    }
+
+    /**
+     * 添加根节点
+     *
+     * @param list
+     * @return
+     */
+    @Override
+    public boolean addData(List<? extends T> list)
+    {
+        return !addNodes(null, list).isEmpty();
+    }
+
+    /**
+     * 作为index位置的节点的兄弟节点，插入到它的前面，index等于数量的时候添加根节点
+     *
+     * @param index
+     * @param data
+     */
+    @Override
+    public void addData(int index, T data)
+    {
+        addData(index, Collections.singletonList(data));
+    }
+
+    /**
+     * 作为index位置的节点的兄弟节点，插入到它的前面，index等于数量的时候添加根节点
+     *
+     * @param index
+     * @param list
+     * @return
+     */
+    @Override
+    public boolean addData(int index, List<? extends T> list)
+    {
+        if (index < 0 || index > size())
+            return false;
+
+        if (index == size())
+            return !addNodes(null, list).isEmpty();
+
+        final Node<T> node = getNode(index);
+        final List<Node<T>> siblings = node.mParent == null ? mRoots : node.mParent.mChildren;
+        return !addNodes(node.mParent, siblings.indexOf(node), list).isEmpty();
+    }
+
+    @Override
+    public boolean removeData(T data)
+    {
+        final int index = indexOf(data);
+        return removeData(index) != null;
+    }
+
+    /**
+     * 移除index位置的节点和它的所有子节点
+     *
+     * @param index
+     * @return
+     */
+    @Override
+    public T removeData(int index)
+    {
+        final Node<T> node = getNode(index);
+        if (node == null)
+            return null;
+
+        removeNode(node);
+        return node.mData;
+    }
+
+    @Override
+    public void updateData(int index, T data)
+    {
+        final Node<T> node = getNode(index);
+        if (node != null)
+            updateNode(node, data);
+    }
+
+    /**
+     * 移除[index, index + count)范围内的节点和它们的所有子节点
+     *
+     * @param index
+     * @param count
+     * @return 范围内被移除的节点的数据
+     */
+    @Override
+    public List<T> removeData(int index, int count)
+    {
+        final List<T> listRemoved = new ArrayList<>();
+        if (!isIndexLegal(index) || count <= 0)
+            return listRemoved;
+
+        final int end = Math.min(size(), index + count);
+        final List<Node<T>> listNode = new ArrayList<>(end - index);
+        for (int i = index; i < end; i++)
+        {
+            listNode.add(getNode(i));
+        }
+
+        beginBatch();
+        try
+        {
+            for (Node<T> item : listNode)
+            {
+                // 已经作为前面节点的子节点被移除
+                if (item.mHolder != this)
+                    continue;
+                removeNode(item);
+            }
+        } finally
+        {
+            commitBatch();
+        }
+
+        for (Node<T> item : listNode)
+        {
+            listRemoved.add(item.mData);
+        }
+        return listRemoved;
+    }
+
+    /**
+     * 移除所有满足条件的节点和它们的子节点，包括不可见的节点
+     *
+     * @param predicate
+     * @return 满足条件的节点数量
+     */
+    @Override
+    public int removeIf(DataPredicate<T> predicate)
+    {
+        if (predicate == null)
+            return 0;
+
+        final List<Node<T>> listNode = new ArrayList<>();
+        collectMatched(mRoots, predicate, listNode);
+
+        beginBatch();
+        try
+        {
+            for (Node<T> item : listNode)
+            {
+                removeNode(item);
+            }
+        } finally
+        {
+            commitBatch();
+        }
+        return listNode.size();
+    }
+
+    private static <T> void collectMatched(List<Node<T>> listNode, DataPredicate<T> predicate, List<Node<T>> out)
+    {
+        for (Node<T> item : listNode)
+        {
+            if (predicate.test(item.mData))
+                out.add(item);
+            else
+                collectMatched(item.mChildren, predicate, out);
+        }
+    }
+
+    @Override
+    public void updateData(int index, List<? extends T> list)
+    {
+        if (list == null || list.isEmpty())
+            return;
+
+        if (index < 0 || index + list.size() > size())
+            return;
+
+        final List<T> listData = transformData(list);
+        for (int i = 0; i < listData.size(); i++)
+        {
+            final T item = listData.get(i);
+            if (item == null)
+                continue;
+
+            final Node<T> node = getNode(index + i);
+            if (mMapNode.get(node.mData) == node)
+                mMapNode.remove(node.mData);
+            node.mData = item;
+            mMapNode.put(item, node);
+        }
+
+        if (listData.size() == 1)
+            getNotifier().onDataChanged(index, get(index));
+        else
+            getNotifier().onDataRangeChanged(index, mDataView.subList(index, index + listData.size()));
+    }
+
+    /**
+     * 转换所有节点的数据，包括不可见的节点，返回null表示不转换
+     *
+     * @param operator
+     */
+    @Override
+    public void replaceAll(DataTransform<T> operator)
+    {
+        if (operator == null)
+            return;
+
+        beginBatch();
+        try
+        {
+            replaceAll(mRoots, operator);
+        } finally
+        {
+            commitBatch();
+        }
+    }
+
+    private void replaceAll(List<Node<T>> listNode, DataTransform<T> operator)
+    {
+        for (Node<T> item : listNode)
+        {
+            final T data = operator.transform(item.mData);
+            if (data != null && data != item.mData)
+                updateNode(item, data);
+            replaceAll(item.mChildren, operator);
+        }
+    }
+
+    @Override
+    public boolean moveData(int fromIndex, int toIndex)
+    {
+        throw new UnsupportedOperationException("TreeDataHolder does not support moving data");
+    }
+
+    //---------- modify end ----------
+
+    @Override
+    public T get(int index)
+    {
+        final Node<T> node = getNode(index);
+        return node == null ? null : node.mData;
+    }
+
+    @Override
+    public int size()
+    {
+        return size(mRoot);
+    }
+
+    /**
+     * 先按引用查找节点，O(log n)，找不到的话再按equals查找可见的数据
+     *
+     * @param data
+     * @return
+     */
+    @Override
+    public int indexOf(T data)
+    {
+        if (data == null)
+            return -1;
+
+        final Node<T> node = mMapNode.get(data);
+        if (node != null && node.mEntry != null)
+            return indexOfNode(node);
+
+        final int size = size();
+        for (int i = 0; i < size; i++)
+        {
+            if (data.equals(get(i)))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public List<T> getData()
+    {
+        return mDataView;
+    }
+
+    /**
+     * 树的节点
+     *
+     * @param <T>
+     */
+    public static final class Node<T>
+    {
+        private TreeDataHolder<T> mHolder;
+        private final Node<T> mParent;
+        private final List<Node<T>> mChildren = new ArrayList<>();
+        private final List<Node<T>> mChildrenView = Collections.unmodifiableList(mChildren);
+        private T mData;
+        private boolean mExpanded;
+        /**
+         * 节点可见的时候在平衡树中的位置
+         */
+        private Entry mEntry;
+
+        private Node(TreeDataHolder<T> holder, Node<T> parent, T data)
+        {
+            mHolder = holder;
+            mParent = parent;
+            mData = data;
+        }
+
+        public T getData()
+        {
+            return mData;
+        }
+
+        /**
+         * 返回父节点，根节点返回null
+         *
+         * @return
+         */
+        public Node<T> getParent()
+        {
+            return mParent;
+        }
+
+        public List<Node<T>> getChildren()
+        {
+            return mChildrenView;
+        }
+
+        public boolean isExpanded()
+        {
+            return mExpanded;
+        }
+
+        /**
+         * 节点是否可见，即所有的祖先节点都已经展开
+         *
+         * @return
+         */
+        public boolean isVisible()
+        {
+            return mEntry != null;
+        }
+
+        /**
+         * 返回节点的层级，根节点为0
+         *
+         * @return
+         */
+        public int getLevel()
+        {
+            int level = 0;
+            Node<T> parent = mParent;
+            while (parent != null)
+            {
+                level++;
+                parent = parent.mParent;
+            }
+            return level;
+        }
+    }
+
+    private static final class Entry
+    {
+        final Node<?> mNode;
+        final int mPriority;
+        Entry mLeft;
+        Entry mRight;
+        Entry mParent;
+        int mSize = 1;
+
+        Entry(Node<?> node, int priority)
+        {
+            mNode = node;
+            mPriority = priority;
+        }
+    }
+}
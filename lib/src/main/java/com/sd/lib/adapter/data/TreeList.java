@@ -0,0 +1,682 @@
+package com.sd.lib.adapter.data;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按位置计数的B+树实现的List，数据分块保存在叶子节点中，任意位置的插入、删除和查找都是O(log n)
+ * <p>
+ * 会缓存最近访问的叶子节点，按顺序访问的时候只有跨越叶子节点才需要重新查找
+ * <p>
+ * 节点是写时复制的，{@link #snapshot()}和从另一个TreeList创建都是O(1)的，共享现有的节点，
+ * 之后修改的时候只复制从根节点到被修改的叶子节点的路径
+ *
+ * @param <T>
+ */
+public class TreeList<T> extends AbstractList<T>
+{
+    private static final int MAX_LEAF_SIZE = 64;
+    private static final int MAX_CHILD_COUNT = 32;
+
+    /**
+     * 可以直接修改的节点的所有者，和其他列表共享节点之后更换，共享的节点不会再被修改
+     */
+    private Object mOwner = new Object();
+    private Node mRoot = new Leaf(mOwner);
+
+    /**
+     * 最近访问的叶子节点和它第一个数据的位置，结构变化后失效
+     */
+    private Leaf mCacheLeaf;
+    private int mCacheStart;
+
+    public TreeList()
+    {
+    }
+
+    public TreeList(Collection<? extends T> collection)
+    {
+        if (collection instanceof TreeList)
+            mRoot = ((TreeList<?>) collection).share();
+        else if (collection instanceof Snapshot)
+            mRoot = ((Snapshot<?>) collection).mRoot;
+        else
+            addAll(collection);
+    }
+
+    /**
+     * 返回当前数据的只读快照，O(1)，之后对当前列表的修改不会影响快照，快照可以在任意线程读取
+     *
+     * @return
+     */
+    public List<T> snapshot()
+    {
+        return new Snapshot<>(share());
+    }
+
+    /**
+     * 和其他列表共享当前的节点，之后修改的时候需要先复制
+     *
+     * @return
+     */
+    private Node share()
+    {
+        mOwner = new Object();
+        return mRoot;
+    }
+
+    /**
+     * list是否是可以共享节点的列表
+     *
+     * @param list
+     * @return
+     */
+    static boolean isShareable(List<?> list)
+    {
+        return list instanceof TreeList || list instanceof Snapshot;
+    }
+
+    @Override
+    public int size()
+    {
+        return mRoot.mSize;
+    }
+
+    @Override
+    public T get(int index)
+    {
+        checkIndex(index);
+        final Leaf leaf = findLeaf(index);
+        return (T) leaf.mItems[index - mCacheStart];
+    }
+
+    @Override
+    public T set(int index, T element)
+    {
+        checkIndex(index);
+        final Leaf leaf = editLeaf(index);
+        final int offset = index - mCacheStart;
+        final T old = (T) leaf.mItems[offset];
+        leaf.mItems[offset] = element;
+        return old;
+    }
+
+    @Override
+    public void add(int index, T element)
+    {
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + size());
+
+        mRoot = edit(mRoot);
+        final Node split = insert(mRoot, index, element);
+        if (split != null)
+        {
+            final Inner root = new Inner(mOwner);
+            root.addChild(0, mRoot);
+            root.addChild(1, split);
+            root.mSize = mRoot.mSize + split.mSize;
+            mRoot = root;
+        }
+
+        mCacheLeaf = null;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index)
+    {
+        checkIndex(index);
+
+        mRoot = edit(mRoot);
+        final T old = remove(mRoot, index);
+        while (mRoot instanceof Inner && ((Inner) mRoot).mCount == 1)
+        {
+            mRoot = ((Inner) mRoot).mChildren[0];
+        }
+
+        mCacheLeaf = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear()
+    {
+        mRoot = new Leaf(mOwner);
+        mCacheLeaf = null;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex)
+    {
+        for (int i = fromIndex; i < toIndex; i++)
+        {
+            remove(fromIndex);
+        }
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + size());
+    }
+
+    /**
+     * 返回可以直接修改的节点，如果node是共享的，返回它的复制
+     *
+     * @param node
+     * @return
+     */
+    private Node edit(Node node)
+    {
+        return node.mOwner == mOwner ? node : node.copy(mOwner);
+    }
+
+    /**
+     * 查找index所在的叶子节点，并保存到缓存
+     *
+     * @param index
+     * @return
+     */
+    private Leaf findLeaf(int index)
+    {
+        final Leaf cache = mCacheLeaf;
+        if (cache != null && index >= mCacheStart && index < mCacheStart + cache.mSize)
+            return cache;
+
+        Node node = mRoot;
+        int start = 0;
+        while (node instanceof Inner)
+        {
+            final Inner inner = (Inner) node;
+            int i = 0;
+            while (index - start >= inner.mChildren[i].mSize)
+            {
+                start += inner.mChildren[i].mSize;
+                i++;
+            }
+            node = inner.mChildren[i];
+        }
+
+        mCacheLeaf = (Leaf) node;
+        mCacheStart = start;
+        return mCacheLeaf;
+    }
+
+    /**
+     * 查找index所在的叶子节点，路径上共享的节点会被复制，并保存到缓存
+     *
+     * @param index
+     * @return
+     */
+    private Leaf editLeaf(int index)
+    {
+        // 叶子节点不是共享的，那么它的所有祖先节点也不是共享的
+        final Leaf cache = mCacheLeaf;
+        if (cache != null && cache.mOwner == mOwner && index >= mCacheStart && index < mCacheStart + cache.mSize)
+            return cache;
+
+        mRoot = edit(mRoot);
+        Node node = mRoot;
+        int start = 0;
+        while (node instanceof Inner)
+        {
+            final Inner inner = (Inner) node;
+            int i = 0;
+            while (index - start >= inner.mChildren[i].mSize)
+            {
+                start += inner.mChildren[i].mSize;
+                i++;
+            }
+            node = edit(inner.mChildren[i]);
+            inner.mChildren[i] = node;
+        }
+
+        mCacheLeaf = (Leaf) node;
+        mCacheStart = start;
+        return mCacheLeaf;
+    }
+
+    /**
+     * 在node的index位置插入数据，node必须是可以直接修改的
+     *
+     * @param node
+     * @param index
+     * @param element
+     * @return 如果node被拆分，返回拆分出来的右边节点
+     */
+    private Node insert(Node node, int index, Object element)
+    {
+        if (node instanceof Leaf)
+            return ((Leaf) node).insert(index, element);
+
+        final Inner inner = (Inner) node;
+        int i = 0;
+        while (i < inner.mCount - 1 && index > inner.mChildren[i].mSize)
+        {
+            index -= inner.mChildren[i].mSize;
+            i++;
+        }
+
+        inner.mSize++;
+        final Node child = edit(inner.mChildren[i]);
+        inner.mChildren[i] = child;
+        final Node split = insert(child, index, element);
+        if (split == null)
+            return null;
+
+        inner.addChild(i + 1, split);
+        return inner.mCount > MAX_CHILD_COUNT ? inner.split() : null;
+    }
+
+    /**
+     * 删除node中index位置的数据，node必须是可以直接修改的
+     *
+     * @param node
+     * @param index
+     * @return 被删除的数据
+     */
+    private T remove(Node node, int index)
+    {
+        if (node instanceof Leaf)
+            return (T) ((Leaf) node).remove(index);
+
+        final Inner inner = (Inner) node;
+        int i = 0;
+        while (index >= inner.mChildren[i].mSize)
+        {
+            index -= inner.mChildren[i].mSize;
+            i++;
+        }
+
+        inner.mSize--;
+        final Node child = edit(inner.mChildren[i]);
+        inner.mChildren[i] = child;
+        final T old = remove(child, index);
+
+        if (child.mSize == 0)
+        {
+            inner.removeChild(i);
+        } else if (child.isUnderflow())
+        {
+            // 和相邻的节点合并
+            if (i + 1 < inner.mCount && child.canMerge(inner.mChildren[i + 1]))
+            {
+                child.merge(inner.mChildren[i + 1]);
+                inner.removeChild(i + 1);
+            } else if (i > 0 && inner.mChildren[i - 1].canMerge(child))
+            {
+                final Node left = edit(inner.mChildren[i - 1]);
+                inner.mChildren[i - 1] = left;
+                left.merge(child);
+                inner.removeChild(i);
+            }
+        }
+        return old;
+    }
+
+    //---------- compare start ----------
+
+    private static Node getRoot(List<?> list)
+    {
+        if (list instanceof TreeList)
+            return ((TreeList<?>) list).mRoot;
+        if (list instanceof Snapshot)
+            return ((Snapshot<?>) list).mRoot;
+        return null;
+    }
+
+    /**
+     * 返回两个列表开头相同(同一个对象)的数据数量，如果两个列表共享节点，共享的子树会直接跳过
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public static int commonPrefix(List<?> a, List<?> b)
+    {
+        final int size = Math.min(a.size(), b.size());
+        final Node rootA = getRoot(a);
+        final Node rootB = getRoot(b);
+
+        int count = 0;
+        if (rootA != null && rootB != null)
+            count = Math.min(size, prefix(rootA, rootB));
+
+        // 结构不一致的部分逐个比较
+        while (count < size && a.get(count) == b.get(count))
+        {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 返回两个列表末尾相同(同一个对象)的数据数量，不超过limit，如果两个列表共享节点，共享的子树会直接跳过
+     *
+     * @param a
+     * @param b
+     * @param limit
+     * @return
+     */
+    public static int commonSuffix(List<?> a, List<?> b, int limit)
+    {
+        final int sizeA = a.size();
+        final int sizeB = b.size();
+        limit = Math.min(limit, Math.min(sizeA, sizeB));
+        final Node rootA = getRoot(a);
+        final Node rootB = getRoot(b);
+
+        int count = 0;
+        if (rootA != null && rootB != null)
+            count = Math.min(limit, suffix(rootA, rootB));
+
+        while (count < limit && a.get(sizeA - 1 - count) == b.get(sizeB - 1 - count))
+        {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 从开头对齐比较两个节点，返回相同的数据数量，节点结构不一致的时候返回已经确定相同的数量
+     */
+    private static int prefix(Node a, Node b)
+    {
+        if (a == b)
+            return a.mSize;
+
+        if (a instanceof Leaf && b instanceof Leaf)
+        {
+            final Object[] itemsA = ((Leaf) a).mItems;
+            final Object[] itemsB = ((Leaf) b).mItems;
+            final int size = Math.min(a.mSize, b.mSize);
+            int i = 0;
+            while (i < size && itemsA[i] == itemsB[i])
+            {
+                i++;
+            }
+            return i;
+        }
+
+        if (a instanceof Inner && b instanceof Inner)
+        {
+            final Inner innerA = (Inner) a;
+            final Inner innerB = (Inner) b;
+            int count = 0;
+            for (int i = 0; i < innerA.mCount && i < innerB.mCount; i++)
+            {
+                final Node childA = innerA.mChildren[i];
+                final Node childB = innerB.mChildren[i];
+                final int same = prefix(childA, childB);
+                count += same;
+                if (same != childA.mSize || same != childB.mSize)
+                    return count;
+            }
+            return count;
+        }
+        return 0;
+    }
+
+    /**
+     * 从末尾对齐比较两个节点，返回相同的数据数量，节点结构不一致的时候返回已经确定相同的数量
+     */
+    private static int suffix(Node a, Node b)
+    {
+        if (a == b)
+            return a.mSize;
+
+        if (a instanceof Leaf && b instanceof Leaf)
+        {
+            final Object[] itemsA = ((Leaf) a).mItems;
+            final Object[] itemsB = ((Leaf) b).mItems;
+            final int size = Math.min(a.mSize, b.mSize);
+            int i = 0;
+            while (i < size && itemsA[a.mSize - 1 - i] == itemsB[b.mSize - 1 - i])
+            {
+                i++;
+            }
+            return i;
+        }
+
+        if (a instanceof Inner && b instanceof Inner)
+        {
+            final Inner innerA = (Inner) a;
+            final Inner innerB = (Inner) b;
+            int count = 0;
+            for (int i = 1; i <= innerA.mCount && i <= innerB.mCount; i++)
+            {
+                final Node childA = innerA.mChildren[innerA.mCount - i];
+                final Node childB = innerB.mChildren[innerB.mCount - i];
+                final int same = suffix(childA, childB);
+                count += same;
+                if (same != childA.mSize || same != childB.mSize)
+                    return count;
+            }
+            return count;
+        }
+        return 0;
+    }
+
+    //---------- compare end ----------
+
+    /**
+     * 只读快照，节点不会再被修改，不使用查找缓存，所以可以在任意线程读取
+     *
+     * @param <T>
+     */
+    private static final class Snapshot<T> extends AbstractList<T>
+    {
+        final Node mRoot;
+
+        Snapshot(Node root)
+        {
+            mRoot = root;
+        }
+
+        @Override
+        public T get(int index)
+        {
+            if (index < 0 || index >= mRoot.mSize)
+                throw new IndexOutOfBoundsException("index:" + index + " size:" + mRoot.mSize);
+
+            Node node = mRoot;
+            while (node instanceof Inner)
+            {
+                final Inner inner = (Inner) node;
+                int i = 0;
+                while (index >= inner.mChildren[i].mSize)
+                {
+                    index -= inner.mChildren[i].mSize;
+                    i++;
+                }
+                node = inner.mChildren[i];
+            }
+            return (T) ((Leaf) node).mItems[index];
+        }
+
+        @Override
+        public int size()
+        {
+            return mRoot.mSize;
+        }
+    }
+
+    private abstract static class Node
+    {
+        /**
+         * 节点的所有者，和列表的所有者相同的时候才可以直接修改
+         */
+        final Object mOwner;
+        /**
+         * 节点下的数据数量
+         */
+        int mSize;
+
+        Node(Object owner)
+        {
+            mOwner = owner;
+        }
+
+        abstract Node copy(Object owner);
+
+        abstract boolean isUnderflow();
+
+        abstract boolean canMerge(Node right);
+
+        abstract void merge(Node right);
+    }
+
+    private static final class Leaf extends Node
+    {
+        final Object[] mItems = new Object[MAX_LEAF_SIZE];
+
+        Leaf(Object owner)
+        {
+            super(owner);
+        }
+
+        @Override
+        Node copy(Object owner)
+        {
+            final Leaf leaf = new Leaf(owner);
+            System.arraycopy(mItems, 0, leaf.mItems, 0, mSize);
+            leaf.mSize = mSize;
+            return leaf;
+        }
+
+        Node insert(int index, Object element)
+        {
+            if (mSize < MAX_LEAF_SIZE)
+            {
+                System.arraycopy(mItems, index, mItems, index + 1, mSize - index);
+                mItems[index] = element;
+                mSize++;
+                return null;
+            }
+
+            // 在末尾添加的时候保持当前节点是满的，按顺序添加可以得到紧凑的叶子节点
+            final int splitIndex = index == MAX_LEAF_SIZE ? MAX_LEAF_SIZE : MAX_LEAF_SIZE / 2;
+            final Leaf right = new Leaf(mOwner);
+            right.mSize = MAX_LEAF_SIZE - splitIndex;
+            System.arraycopy(mItems, splitIndex, right.mItems, 0, right.mSize);
+            for (int i = splitIndex; i < MAX_LEAF_SIZE; i++)
+            {
+                mItems[i] = null;
+            }
+            mSize = splitIndex;
+
+            if (index <= splitIndex && splitIndex < MAX_LEAF_SIZE)
+                insert(index, element);
+            else
+                right.insert(index - splitIndex, element);
+            return right;
+        }
+
+        Object remove(int index)
+        {
+            final Object old = mItems[index];
+            System.arraycopy(mItems, index + 1, mItems, index, mSize - index - 1);
+            mItems[--mSize] = null;
+            return old;
+        }
+
+        @Override
+        boolean isUnderflow()
+        {
+            return mSize < MAX_LEAF_SIZE / 4;
+        }
+
+        @Override
+        boolean canMerge(Node right)
+        {
+            return mSize + right.mSize <= MAX_LEAF_SIZE;
+        }
+
+        @Override
+        void merge(Node right)
+        {
+            final Leaf leaf = (Leaf) right;
+            System.arraycopy(leaf.mItems, 0, mItems, mSize, leaf.mSize);
+            mSize += leaf.mSize;
+        }
+    }
+
+    /**
+     * 增删子节点不会修改mSize，由调用方维护
+     */
+    private static final class Inner extends Node
+    {
+        /**
+         * 多一个位置用来临时保存拆分前的子节点
+         */
+        final Node[] mChildren = new Node[MAX_CHILD_COUNT + 1];
+        int mCount;
+
+        Inner(Object owner)
+        {
+            super(owner);
+        }
+
+        @Override
+        Node copy(Object owner)
+        {
+            final Inner inner = new Inner(owner);
+            System.arraycopy(mChildren, 0, inner.mChildren, 0, mCount);
+            inner.mCount = mCount;
+            inner.mSize = mSize;
+            return inner;
+        }
+
+        void addChild(int index, Node child)
+        {
+            System.arraycopy(mChildren, index, mChildren, index + 1, mCount - index);
+            mChildren[index] = child;
+            mCount++;
+        }
+
+        void removeChild(int index)
+        {
+            System.arraycopy(mChildren, index + 1, mChildren, index, mCount - index - 1);
+            mChildren[--mCount] = null;
+        }
+
+        Inner split()
+        {
+            final int splitIndex = mCount / 2;
+            final Inner right = new Inner(mOwner);
+            for (int i = splitIndex; i < mCount; i++)
+            {
+                right.mChildren[right.mCount++] = mChildren[i];
+                right.mSize += mChildren[i].mSize;
+                mChildren[i] = null;
+            }
+            mCount = splitIndex;
+            mSize -= right.mSize;
+            return right;
+        }
+
+        @Override
+        boolean isUnderflow()
+        {
+            return mCount < MAX_CHILD_COUNT / 4;
+        }
+
+        @Override
+        boolean canMerge(Node right)
+        {
+            return mCount + ((Inner) right).mCount <= MAX_CHILD_COUNT;
+        }
+
+        @Override
+        void merge(Node right)
+        {
+            final Inner inner = (Inner) right;
+            System.arraycopy(inner.mChildren, 0, mChildren, mCount, inner.mCount);
+            mCount += inner.mCount;
+            mSize += inner.mSize;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.sd.lib.adapter.data.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 比较两个数据集，基于Myers差分算法(线性空间)，并支持检测item的移动
+ * <p>
+ * {@link KeyedDiffCallback}按标识匹配新旧数据，取匹配结果的最长递增子序列作为不移动的部分，O(n log n)，
+ * 大量移动(比如打乱顺序)的时候比Myers算法快很多
+ */
+public class DataDiff
+{
+    private DataDiff()
+    {
+    }
+
+    /**
+     * 比较新旧数据集，此方法不会修改传入的数据集，可以在子线程调用
+     *
+     * @param oldList
+     * @param newList
+     * @param callback
+     * @param <T>
+     * @return
+     */
+    public static <T> DiffResult<T> calculate(List<? extends T> oldList, List<? extends T> newList, DiffCallback<T> callback)
+    {
+        if (oldList == null || newList == null)
+            throw new NullPointerException("list is null");
+        if (callback == null)
+            throw new NullPointerException("callback is null");
+
+        final List<T> listOld = (List<T>) oldList;
+        final List<T> listNew = (List<T>) newList;
+
+        final List<int[]> listSnake;
+        if (callback instanceof KeyedDiffCallback)
+        {
+            listSnake = findKeyedSnakes(listOld, listNew, (KeyedDiffCallback<T>) callback);
+        } else
+        {
+            final Differ<T> differ = new Differ<>(listOld, listNew, callback);
+            listSnake = differ.findSnakes();
+        }
+        return new DiffResult<>(listOld, listNew, callback, listSnake);
+    }
+
+    /**
+     * 按标识匹配新旧数据，匹配结果按旧数据的顺序排列后，新位置的最长递增子序列就是不需要移动的item，
+     * 其他匹配的item由{@link DiffResult}作为移动处理
+     *
+     * @return 按位置排序的{x, y, size}
+     */
+    private static <T> List<int[]> findKeyedSnakes(List<T> oldList, List<T> newList, KeyedDiffCallback<T> callback)
+    {
+        final Map<Object, ArrayDeque<Integer>> mapNew = new HashMap<>();
+        for (int j = 0; j < newList.size(); j++)
+        {
+            final T item = newList.get(j);
+            final Object key = item == null ? null : callback.getItemKey(item);
+            if (key == null)
+                continue;
+
+            ArrayDeque<Integer> bucket = mapNew.get(key);
+            if (bucket == null)
+            {
+                bucket = new ArrayDeque<>(1);
+                mapNew.put(key, bucket);
+            }
+            bucket.add(j);
+        }
+
+        final int oldSize = oldList.size();
+        final int[] oldToNew = new int[oldSize];
+        for (int i = 0; i < oldSize; i++)
+        {
+            oldToNew[i] = -1;
+
+            final T item = oldList.get(i);
+            final ArrayDeque<Integer> bucket = item == null ? null : mapNew.get(callback.getItemKey(item));
+            if (bucket == null)
+                continue;
+
+            final Iterator<Integer> it = bucket.iterator();
+            while (it.hasNext())
+            {
+                final int newIndex = it.next();
+                if (callback.areItemsTheSame(item, newList.get(newIndex)))
+                {
+                    it.remove();
+                    oldToNew[i] = newIndex;
+                    break;
+                }
+            }
+        }
+
+        // tails[k]是长度为k+1的递增子序列中结尾最小的旧位置，prev保存子序列中的前一个旧位置
+        final int[] tails = new int[oldSize];
+        final int[] prev = new int[oldSize];
+        int length = 0;
+        for (int i = 0; i < oldSize; i++)
+        {
+            final int newIndex = oldToNew[i];
+            if (newIndex == -1)
+                continue;
+
+            int low = 0;
+            int high = length;
+            while (low < high)
+            {
+                final int mid = (low + high) >>> 1;
+                if (oldToNew[tails[mid]] < newIndex)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            prev[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length)
+                length++;
+        }
+
+        // 从后往前把位置连续的item合并为snake
+        final List<int[]> listSnake = new ArrayList<>();
+        int i = length > 0 ? tails[length - 1] : -1;
+        while (i != -1)
+        {
+            final int j = oldToNew[i];
+            final int[] last = listSnake.isEmpty() ? null : listSnake.get(listSnake.size() - 1);
+            if (last != null && last[0] == i + 1 && last[1] == j + 1)
+            {
+                last[0] = i;
+                last[1] = j;
+                last[2]++;
+            } else
+            {
+                listSnake.add(new int[]{i, j, 1});
+            }
+            i = prev[i];
+        }
+        Collections.reverse(listSnake);
+        return listSnake;
+    }
+
+    private static final class Differ<T>
+    {
+        private final List<T> mOldList;
+        private final List<T> mNewList;
+        private final DiffCallback<T> mCallback;
+
+        private final int[] mForward;
+        private final int[] mBackward;
+        private final int mOffset;
+
+        /**
+         * 中间snake的查找结果：左边区间终点(x,y)，snake起点(x,y)，snake终点(x,y)，右边区间起点(x,y)
+         */
+        private final int[] mMiddle = new int[8];
+
+        public Differ(List<T> oldList, List<T> newList, DiffCallback<T> callback)
+        {
+            mOldList = oldList;
+            mNewList = newList;
+            mCallback = callback;
+
+            final int max = oldList.size() + newList.size() + 2;
+            mOffset = max;
+            mForward = new int[max * 2 + 1];
+            mBackward = new int[max * 2 + 1];
+        }
+
+        private boolean isSame(int oldIndex, int newIndex)
+        {
+            return mCallback.areItemsTheSame(mOldList.get(oldIndex), mNewList.get(newIndex));
+        }
+
+        /**
+         * 查找所有匹配的snake，返回按位置排序的{x, y, size}
+         *
+         * @return
+         */
+        public List<int[]> findSnakes()
+        {
+            final List<int[]> listSnake = new ArrayList<>();
+            final List<int[]> listRange = new ArrayList<>();
+            listRange.add(new int[]{0, mOldList.size(), 0, mNewList.size()});
+
+            while (!listRange.isEmpty())
+            {
+                final int[] range = listRange.remove(listRange.size() - 1);
+                final int oldStart = range[0];
+                final int oldEnd = range[1];
+                final int newStart = range[2];
+                final int newEnd = range[3];
+
+                if (oldEnd - oldStart == 0 || newEnd - newStart == 0)
+                    continue;
+
+                findMiddleSnake(oldStart, oldEnd, newStart, newEnd);
+                final int[] middle = mMiddle;
+
+                final int size = middle[4] - middle[2];
+                if (size > 0)
+                    listSnake.add(new int[]{middle[2], middle[3], size});
+
+                listRange.add(new int[]{oldStart, middle[0], newStart, middle[1]});
+                listRange.add(new int[]{middle[6], oldEnd, middle[7], newEnd});
+            }
+
+            Collections.sort(listSnake, new Comparator<int[]>()
+            {
+                @Override
+                public int compare(int[] o1, int[] o2)
+                {
+                    return o1[0] - o2[0];
+                }
+            });
+            return listSnake;
+        }
+
+        private void findMiddleSnake(int oldStart, int oldEnd, int newStart, int newEnd)
+        {
+            final int n = oldEnd - oldStart;
+            final int m = newEnd - newStart;
+            final int delta = n - m;
+            final boolean odd = (delta & 1) != 0;
+            final int max = (n + m + 1) / 2;
+
+            final int[] forward = mForward;
+            final int[] backward = mBackward;
+            final int offset = mOffset;
+
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+
+            for (int d = 0; d <= max; d++)
+            {
+                for (int k = -d; k <= d; k += 2)
+                {
+                    int prevX;
+                    int prevK;
+                    int x;
+                    if (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1]))
+                    {
+                        prevK = k + 1;
+                        prevX = forward[offset + prevK];
+                        x = prevX;
+                    } else
+                    {
+                        prevK = k - 1;
+                        prevX = forward[offset + prevK];
+                        x = prevX + 1;
+                    }
+
+                    int y = x - k;
+                    final int startX = x;
+                    final int startY = y;
+                    while (x < n && y < m && isSame(oldStart + x, newStart + y))
+                    {
+                        x++;
+                        y++;
+                    }
+                    forward[offset + k] = x;
+
+                    if (odd && k >= delta - (d - 1) && k <= delta + (d - 1)
+                            && x + backward[offset + delta - k] >= n)
+                    {
+                        final int[] middle = mMiddle;
+                        middle[0] = oldStart + (d == 0 ? startX : prevX);
+                        middle[1] = newStart + (d == 0 ? startY : prevX - prevK);
+                        middle[2] = oldStart + startX;
+                        middle[3] = newStart + startY;
+                        middle[4] = oldStart + x;
+                        middle[5] = newStart + y;
+                        middle[6] = oldStart + x;
+                        middle[7] = newStart + y;
+                        return;
+                    }
+                }
+
+                for (int k = -d; k <= d; k += 2)
+                {
+                    int prevX;
+                    int prevK;
+                    int x;
+                    if (k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1]))
+                    {
+                        prevK = k + 1;
+                        prevX = backward[offset + prevK];
+                        x = prevX;
+                    } else
+                    {
+                        prevK = k - 1;
+                        prevX = backward[offset + prevK];
+                        x = prevX + 1;
+                    }
+
+                    int y = x - k;
+                    final int startX = x;
+                    final int startY = y;
+                    while (x < n && y < m && isSame(oldEnd - 1 - x, newEnd - 1 - y))
+                    {
+                        x++;
+                        y++;
+                    }
+                    backward[offset + k] = x;
+
+                    if (!odd && delta - k >= -d && delta - k <= d
+                            && x + forward[offset + delta - k] >= n)
+                    {
+                        final int[] middle = mMiddle;
+                        middle[0] = oldEnd - x;
+                        middle[1] = newEnd - y;
+                        middle[2] = oldEnd - x;
+                        middle[3] = newEnd - y;
+                        middle[4] = oldEnd - startX;
+                        middle[5] = newEnd - startY;
+                        middle[6] = oldEnd - (d == 0 ? startX : prevX);
+                        middle[7] = newEnd - (d == 0 ? startY : prevX - prevK);
+                        return;
+                    }
+                }
+            }
+
+            throw new IllegalStateException("middle snake was not found, check the DiffCallback implementation");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.sd.lib.adapter.data.diff;
+
+/**
+ * 数据比较器
+ *
+ * @param <T>
+ */
+public interface DiffCallback<T>
+{
+    /**
+     * 两个对象是否代表同一个item
+     *
+     * @param oldItem
+     * @param newItem
+     * @return
+     */
+    boolean areItemsTheSame(T oldItem, T newItem);
+
+    /**
+     * 两个代表同一个item的对象内容是否相同，内容不同的话会通知item刷新
+     *
+     * @param oldItem
+     * @param newItem
+     * @return
+     */
+    boolean areContentsTheSame(T oldItem, T newItem);
+}
@@ -0,0 +1,510 @@
+package com.sd.lib.adapter.data.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据集比较结果
+ *
+ * @param <T>
+ */
+public class DiffResult<T>
+{
+    /**
+     * 没有标识的时候逐个比较查找被移动的item的最大比较次数
+     */
+    private static final int MAX_MOVE_COMPARE = 1 << 20;
+
+    private final List<T> mOldList;
+    private final List<T> mNewList;
+    private final DiffCallback<T> mCallback;
+    private final List<int[]> mListSnake;
+
+    /**
+     * 旧数据在新数据集中的位置，-1表示被删除
+     */
+    private final int[] mOldToNew;
+    /**
+     * 新数据在旧数据集中的位置，-1表示新增
+     */
+    private final int[] mNewToOld;
+
+    DiffResult(List<T> oldList, List<T> newList, DiffCallback<T> callback, List<int[]> listSnake)
+    {
+        mOldList = oldList;
+        mNewList = newList;
+        mCallback = callback;
+        mListSnake = listSnake;
+
+        mOldToNew = new int[oldList.size()];
+        mNewToOld = new int[newList.size()];
+        Arrays.fill(mOldToNew, -1);
+        Arrays.fill(mNewToOld, -1);
+
+        for (int[] snake : listSnake)
+        {
+            for (int i = 0; i < snake[2]; i++)
+            {
+                mOldToNew[snake[0] + i] = snake[1] + i;
+                mNewToOld[snake[1] + i] = snake[0] + i;
+            }
+        }
+        findMoves();
+    }
+
+    /**
+     * 在未匹配的新旧数据中查找被移动的item
+     * <p>
+     * 被删除的旧数据按标识分组，新数据只和标识相同的旧数据比较，{@link KeyedDiffCallback}用它返回的标识，
+     * 否则用item本身(equals)分组，分组没有匹配到的再逐个比较，比较次数超过{@link #MAX_MOVE_COMPARE}之后剩下的按删除和新增处理
+     */
+    private void findMoves()
+    {
+        final KeyedDiffCallback<T> keyedCallback = mCallback instanceof KeyedDiffCallback ? (KeyedDiffCallback<T>) mCallback : null;
+
+        final Map<Object, ArrayDeque<Integer>> mapRemoved = new HashMap<>();
+        int removedCount = 0;
+        for (int i = 0; i < mOldToNew.length; i++)
+        {
+            if (mOldToNew[i] != -1)
+                continue;
+
+            removedCount++;
+            final Object key = getItemKey(keyedCallback, mOldList.get(i));
+            if (key == null)
+                continue;
+
+            ArrayDeque<Integer> bucket = mapRemoved.get(key);
+            if (bucket == null)
+            {
+                bucket = new ArrayDeque<>(1);
+                mapRemoved.put(key, bucket);
+            }
+            bucket.add(i);
+        }
+
+        if (removedCount == 0)
+            return;
+
+        boolean hasUnmatched = false;
+        for (int j = 0; j < mNewToOld.length; j++)
+        {
+            if (mNewToOld[j] != -1)
+                continue;
+
+            final T newItem = mNewList.get(j);
+            final ArrayDeque<Integer> bucket = mapRemoved.get(getItemKey(keyedCallback, newItem));
+            if (bucket != null)
+            {
+                final Iterator<Integer> it = bucket.iterator();
+                while (it.hasNext())
+                {
+                    final int oldIndex = it.next();
+                    if (mCallback.areItemsTheSame(mOldList.get(oldIndex), newItem))
+                    {
+                        it.remove();
+                        mOldToNew[oldIndex] = j;
+                        mNewToOld[j] = oldIndex;
+                        removedCount--;
+                        break;
+                    }
+                }
+            }
+
+            if (mNewToOld[j] == -1)
+                hasUnmatched = true;
+            if (removedCount == 0)
+                return;
+        }
+
+        if (keyedCallback != null || !hasUnmatched)
+            return;
+
+        findMovesByCompare();
+    }
+
+    /**
+     * 逐个比较分组没有匹配到的新旧数据
+     */
+    private void findMovesByCompare()
+    {
+        final List<Integer> listRemoved = new ArrayList<>();
+        for (int i = 0; i < mOldToNew.length; i++)
+        {
+            if (mOldToNew[i] == -1)
+                listRemoved.add(i);
+        }
+
+        int compareCount = 0;
+        for (int j = 0; j < mNewToOld.length; j++)
+        {
+            if (mNewToOld[j] != -1)
+                continue;
+
+            final T newItem = mNewList.get(j);
+            for (int i = 0; i < listRemoved.size(); i++)
+            {
+                final int oldIndex = listRemoved.get(i);
+                if (mCallback.areItemsTheSame(mOldList.get(oldIndex), newItem))
+                {
+                    mOldToNew[oldIndex] = j;
+                    mNewToOld[j] = oldIndex;
+                    listRemoved.remove(i);
+                    break;
+                }
+            }
+
+            compareCount += listRemoved.size();
+            if (listRemoved.isEmpty() || compareCount > MAX_MOVE_COMPARE)
+                break;
+        }
+    }
+
+    private static <T> Object getItemKey(KeyedDiffCallback<T> callback, T item)
+    {
+        if (item == null)
+            return null;
+        return callback != null ? callback.getItemKey(item) : item;
+    }
+
+    private boolean isContentsChanged(int oldIndex, int newIndex)
+    {
+        return !mCallback.areContentsTheSame(mOldList.get(oldIndex), mNewList.get(newIndex));
+    }
+
+    /**
+     * 把比较结果分发给回调，回调的位置都是基于分发过程中逐步变化的数据集，
+     * 按顺序对旧数据集执行这些操作之后得到新数据集
+     *
+     * @param callback
+     */
+    public void dispatchUpdatesTo(UpdateCallback<T> callback)
+    {
+        final UpdateBatcher<T> batcher = new UpdateBatcher<>(callback);
+
+        final int oldSize = mOldList.size();
+        final int newSize = mNewList.size();
+
+        /**
+         * 从后往前分发，当前数据集 = 旧数据集[0, x) + 尾部，尾部的每一个item占一个slot，
+         * slot越大越靠前，尾部item的位置 = x + 比它靠前的有效slot数量
+         */
+        final SlotTree slotTree = new SlotTree(oldSize + newSize);
+        int nextSlot = 0;
+        final int[] oldSlot = new int[oldSize];
+        final int[] newSlot = new int[newSize];
+
+        int x = oldSize;
+        int y = newSize;
+        for (int s = mListSnake.size() - 1; s >= -1; s--)
+        {
+            final int snakeX;
+            final int snakeY;
+            final int snakeSize;
+            if (s >= 0)
+            {
+                final int[] snake = mListSnake.get(s);
+                snakeX = snake[0];
+                snakeY = snake[1];
+                snakeSize = snake[2];
+            } else
+            {
+                snakeX = 0;
+                snakeY = 0;
+                snakeSize = 0;
+            }
+
+            final int endX = snakeX + snakeSize;
+            final int endY = snakeY + snakeSize;
+
+            // 删除
+            for (int k = x - 1; k >= endX; k--)
+            {
+                final int newIndex = mOldToNew[k];
+                if (newIndex == -1)
+                {
+                    batcher.remove(k);
+                } else if (newIndex >= y)
+                {
+                    // 目标位置已经在尾部
+                    final int slot = newSlot[newIndex];
+                    final int target = k + slotTree.countAfter(slot);
+                    batcher.move(k, target);
+                    slotTree.set(slot, 1);
+
+                    if (isContentsChanged(k, newIndex))
+                        batcher.change(target, mNewList.get(newIndex));
+                } else
+                {
+                    // 目标位置还未到达，先留在原处
+                    final int slot = nextSlot++;
+                    slotTree.set(slot, 1);
+                    oldSlot[k] = slot;
+                }
+            }
+
+            // 新增
+            for (int k = y - 1; k >= endY; k--)
+            {
+                final int oldIndex = mNewToOld[k];
+                if (oldIndex == -1)
+                {
+                    batcher.insert(endX, mNewList.get(k));
+                    slotTree.set(nextSlot++, 1);
+                } else if (oldIndex >= endX)
+                {
+                    // 被移动的item留在尾部
+                    final int slot = oldSlot[oldIndex];
+                    final int from = endX + slotTree.countAfter(slot);
+                    slotTree.set(slot, 0);
+                    batcher.move(from, endX);
+                    slotTree.set(nextSlot++, 1);
+
+                    if (isContentsChanged(oldIndex, k))
+                        batcher.change(endX, mNewList.get(k));
+                } else
+                {
+                    // 被移动的item还在前面，先占位
+                    newSlot[k] = nextSlot++;
+                }
+            }
+
+            // 匹配的item
+            for (int k = endX - 1; k >= snakeX; k--)
+            {
+                final int newIndex = k - snakeX + snakeY;
+                if (isContentsChanged(k, newIndex))
+                    batcher.change(k, mNewList.get(newIndex));
+            }
+            slotTree.setRange(nextSlot, snakeSize);
+            nextSlot += snakeSize;
+
+            x = snakeX;
+            y = snakeY;
+        }
+
+        batcher.flush();
+    }
+
+    /**
+     * 比较结果回调
+     *
+     * @param <T>
+     */
+    public interface UpdateCallback<T>
+    {
+        /**
+         * index位置插入了数据
+         *
+         * @param index
+         * @param list
+         */
+        void onInserted(int index, List<T> list);
+
+        /**
+         * index位置开始删除了count个数据
+         *
+         * @param index
+         * @param count
+         */
+        void onRemoved(int index, int count);
+
+        /**
+         * index位置开始的数据内容发生了变化
+         *
+         * @param index
+         * @param list 变化后的数据
+         */
+        void onChanged(int index, List<T> list);
+
+        /**
+         * fromIndex位置的数据被移动到toIndex位置
+         *
+         * @param fromIndex
+         * @param toIndex
+         */
+        void onMoved(int fromIndex, int toIndex);
+    }
+
+    /**
+     * 合并相邻的同类操作
+     */
+    private static final class UpdateBatcher<T>
+    {
+        private static final int TYPE_NONE = 0;
+        private static final int TYPE_INSERT = 1;
+        private static final int TYPE_REMOVE = 2;
+        private static final int TYPE_CHANGE = 3;
+
+        private final UpdateCallback<T> mCallback;
+
+        private int mType = TYPE_NONE;
+        private int mStart;
+        private int mCount;
+        private final ArrayDeque<T> mItems = new ArrayDeque<>();
+
+        public UpdateBatcher(UpdateCallback<T> callback)
+        {
+            mCallback = callback;
+        }
+
+        public void insert(int index, T item)
+        {
+            if (mType == TYPE_INSERT)
+            {
+                if (index == mStart)
+                {
+                    mItems.addFirst(item);
+                    mCount++;
+                    return;
+                } else if (index == mStart + mCount)
+                {
+                    mItems.addLast(item);
+                    mCount++;
+                    return;
+                }
+            }
+
+            flush();
+            mType = TYPE_INSERT;
+            mStart = index;
+            mCount = 1;
+            mItems.add(item);
+        }
+
+        public void remove(int index)
+        {
+            if (mType == TYPE_REMOVE)
+            {
+                if (index == mStart - 1)
+                {
+                    mStart = index;
+                    mCount++;
+                    return;
+                } else if (index == mStart)
+                {
+                    mCount++;
+                    return;
+                }
+            }
+
+            flush();
+            mType = TYPE_REMOVE;
+            mStart = index;
+            mCount = 1;
+        }
+
+        public void change(int index, T item)
+        {
+            if (mType == TYPE_CHANGE)
+            {
+                if (index == mStart - 1)
+                {
+                    mItems.addFirst(item);
+                    mStart = index;
+                    mCount++;
+                    return;
+                } else if (index == mStart + mCount)
+                {
+                    mItems.addLast(item);
+                    mCount++;
+                    return;
+                }
+            }
+
+            flush();
+            mType = TYPE_CHANGE;
+            mStart = index;
+            mCount = 1;
+            mItems.add(item);
+        }
+
+        public void move(int fromIndex, int toIndex)
+        {
+            flush();
+            if (fromIndex != toIndex)
+                mCallback.onMoved(fromIndex, toIndex);
+        }
+
+        public void flush()
+        {
+            switch (mType)
+            {
+                case TYPE_INSERT:
+                    mCallback.onInserted(mStart, new ArrayList<>(mItems));
+                    break;
+                case TYPE_REMOVE:
+                    mCallback.onRemoved(mStart, mCount);
+                    break;
+                case TYPE_CHANGE:
+                    mCallback.onChanged(mStart, new ArrayList<>(mItems));
+                    break;
+                default:
+                    break;
+            }
+
+            mType = TYPE_NONE;
+            mItems.clear();
+        }
+    }
+
+    /**
+     * 树状数组，统计比某个slot靠前(slot值更大)的有效item数量
+     */
+    private static final class SlotTree
+    {
+        private final int[] mTree;
+        private final boolean[] mPresent;
+        private int mTotal;
+
+        public SlotTree(int size)
+        {
+            mTree = new int[size + 1];
+            mPresent = new boolean[size];
+        }
+
+        public void set(int slot, int value)
+        {
+            final boolean present = value != 0;
+            if (mPresent[slot] == present)
+                return;
+
+            mPresent[slot] = present;
+            final int delta = present ? 1 : -1;
+            mTotal += delta;
+            for (int i = slot + 1; i < mTree.length; i += i & (-i))
+            {
+                mTree[i] += delta;
+            }
+        }
+
+        public void setRange(int start, int count)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                set(start + i, 1);
+            }
+        }
+
+        /**
+         * 返回slot值大于指定slot的有效item数量
+         *
+         * @param slot
+         * @return
+         */
+        public int countAfter(int slot)
+        {
+            int sum = 0;
+            for (int i = slot + 1; i > 0; i -= i & (-i))
+            {
+                sum += mTree[i];
+            }
+            return mTotal - sum;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.sd.lib.adapter.data.diff;
+
+/**
+ * 可以返回item标识的数据比较器，查找被移动的item的时候按标识分组，只比较标识相同的item，数据量大的时候建议使用
+ *
+ * @param <T>
+ */
+public interface KeyedDiffCallback<T> extends DiffCallback<T>
+{
+    /**
+     * 返回item的标识，{@link #areItemsTheSame(Object, Object)}返回true的两个item标识必须相同(equals)
+     *
+     * @param item
+     * @return null-没有标识，不参与移动的查找
+     */
+    Object getItemKey(T item);
+}
@@ -4,6 +4,8 @@ import com.sd.lib.adapter.Adapter;
 import com.sd.lib.adapter.data.DataHolder;
 import com.sd.lib.selectmanager.FSelectManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class FAdapterSelectManager<T> extends FSelectManager<T> implements DataHolder.DataChangeCallback<T>
@@ -28,7 +30,7 @@ public class FAdapterSelectManager<T> extends FSelectManager<T> implements DataH
     @Override
     public void onDataChanged(List<T> list)
     {
-        setItems(list);
+        setItems(new ArrayList<>(list));
     }
 
     @Override
@@ -40,12 +42,39 @@ public class FAdapterSelectManager<T> extends FSelectManager<T> implements DataH
     @Override
     public void onDataAdded(int index, List<T> list)
     {
-        addItems(index, list);
+        addItems(index, new ArrayList<>(list));
     }
 
     @Override
     public void onDataRemoved(int index, T data)
+    {
+        if (data != null)
+            removeItem(data);
+    }
+
+    @Override
+    public void onDataRangeChanged(int index, List<T> list)
+    {
+        for (int i = 0; i < list.size(); i++)
+        {
+            updateItem(index + i, list.get(i));
+        }
+    }
+
+    @Override
+    public void onDataRangeRemoved(int index, List<T> list)
+    {
+        for (T item : list)
+        {
+            if (item != null)
+                removeItem(item);
+        }
+    }
+
+    @Override
+    public void onDataMoved(int fromIndex, int toIndex, T data)
     {
         removeItem(data);
+        addItems(toIndex, Collections.singletonList(data));
     }
 }
\ No newline at end of file
@@ -8,6 +8,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.sd.lib.adapter.Adapter;
 
+import java.util.Collections;
+import java.util.List;
+
 public abstract class FRecyclerViewHolder<T> extends RecyclerView.ViewHolder
 {
     private Adapter<T> mAdapter;
@@ -96,6 +99,18 @@ public abstract class FRecyclerViewHolder<T> extends RecyclerView.ViewHolder
      * @param model
      */
     public final void notifyOnUpdateData(int position, T model)
+    {
+        notifyOnUpdateData(position, model, Collections.emptyList());
+    }
+
+    /**
+     * 通知{@link #onUpdateData(int, Object, List)}
+     *
+     * @param position
+     * @param model
+     * @param payloads
+     */
+    public final void notifyOnUpdateData(int position, T model, List<Object> payloads)
     {
         mModel = model;
         if (mBindDataCallback != null)
@@ -104,7 +119,7 @@ public abstract class FRecyclerViewHolder<T> extends RecyclerView.ViewHolder
                 return;
         }
 
-        this.onUpdateData(position, model);
+        this.onUpdateData(position, model, payloads);
     }
 
     /**
@@ -131,6 +146,18 @@ public abstract class FRecyclerViewHolder<T> extends RecyclerView.ViewHolder
         onBindData(position, model);
     }
 
+    /**
+     * 刷新item的时候触发，可以根据payloads只刷新变化的部分，默认调用{@link #onUpdateData(int, Object)}
+     *
+     * @param position
+     * @param model
+     * @param payloads 合并后的payload，空集合表示整个item需要刷新
+     */
+    protected void onUpdateData(int position, T model, List<Object> payloads)
+    {
+        onUpdateData(position, model);
+    }
+
     public interface BindDataCallback<T>
     {
         /**